@@ -1,4 +1,28 @@
+import build_management.AdmissionController;
+import build_management.Bisector;
+import build_management.BuildDurationModel;
+import build_management.BuildLogArchive;
+import build_management.BuildResult;
+import build_management.BuildScheduler;
+import build_management.ConcurrencyLimiter;
+import build_management.InFlightBuilds;
+import build_management.JobJournal;
+import build_management.MatrixEntryResult;
+import build_management.PathFilter;
+import build_management.ResourceMetrics;
+import build_management.WorkspaceCopier;
+import build_management.WorkspacePolicy;
 import code_verification.CodeVerifier;
+import code_verification.DaemonMavenExecutor;
+import code_verification.FailFastMonitor;
+import code_verification.ForkedMavenExecutor;
+import code_verification.MavenExecutor;
+import code_verification.MavenRunPermits;
+import code_verification.PhaseTiming;
+import code_verification.ResourceUsage;
+import code_verification.TestCaseResult;
+import code_verification.TestDurationHistory;
+import code_verification.TestRerun;
 import server_communication.*;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -6,12 +30,35 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.w3c.dom.*;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  * Main class of the project
@@ -21,31 +68,204 @@ import java.nio.charset.StandardCharsets;
 
 public class CIServer extends AbstractHandler {
 
+    private final TestDurationHistory testDurations;
+    private final String failFastMode;
+    private final BuildLogArchive logArchive;
+    private final String publicUrl;
+    private final Set<String> mavenDaemonRepos;
+    private final String mavenDaemonCommand;
+    private final String moduleThreads;
+    // JAVA_HOME of each JDK every push is built with, by label, the first one builds in the checkout itself
+    private final Map<String, String> jdkMatrix = new LinkedHashMap<>();
+    private final ExecutorService matrixWorkers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "jdk-matrix-build");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final int testReruns;
+    private final String flakePolicy;
+    private final boolean bisectEnabled;
+    private final int bisectProbes;
+    // Last commit of each repository branch ("repoURL@branch") whose build succeeded, the good end of bisections
+    private final Map<String, String> lastGreenCommits = new ConcurrentHashMap<>();
+    // Moving average of the maven startup time of each executor, used to report the savings of the daemon
+    private final Map<String, Double> averageMavenStartup = new ConcurrentHashMap<>();
+    private final InFlightBuilds<String, BuildResult> inFlightBuilds = new InFlightBuilds<>();
+    private final AdmissionController admissionController;
+    private final JobJournal jobJournal;
+    private final ResourceMetrics resourceMetrics = new ResourceMetrics();
+    private final WorkspacePolicy workspacePolicy;
+    private final BuildDurationModel durationModel = new BuildDurationModel(0.3, 120_000);
+    private final BuildScheduler<BuildResult> scheduler;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    // Bounds the maven processes of the builds, their JDK matrix entries and bisection probes to the same limit
+    private final MavenRunPermits mavenRunPermits;
+    private final ScheduledExecutorService concurrencyAdjuster = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "concurrency-adjuster");
+                thread.setDaemon(true);
+                return thread;
+            });
+    // Status identifier of the build queued or running for each repository and commit, given to the duplicates
+    private final Map<String, String> statusIds = new ConcurrentHashMap<>();
+    private final Map<String, JSONObject> finishedBuilds = Collections.synchronizedMap(
+            new LinkedHashMap<>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, JSONObject> eldest) {
+                    return size() > FINISHED_BUILDS_KEPT;
+                }
+            });
+    private final PathFilter pathFilter;
+    // Verdict of the last commits built, by repository and commit, inherited by the children changing ignored paths
+    private final Map<String, BuildResult> commitVerdicts = Collections.synchronizedMap(
+            new LinkedHashMap<>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, BuildResult> eldest) {
+                    return size() > COMMIT_VERDICTS_KEPT;
+                }
+            });
+    private final LongAdder inheritedBuilds = new LongAdder();
+
+    private static final int LOG_EXCERPT_BYTES = 4096;
+    private static final int FINISHED_BUILDS_KEPT = 500;
+    private static final int COMMIT_VERDICTS_KEPT = 2000;
+
     /**
-     * Empty default constructor, no resource nor parameter need for instantiation
+     * Default constructor, the server is configured through the following environment variables:
+     * <ul>
+     * <li>Logs: CI_LOG_ARCHIVE_MB bounds the build logs archived in the dd2480-logs temporary folder (1024 by
+     * default, oldest deleted first), CI_PUBLIC_URL is the base address of the links in the notifications.</li>
+     * <li>Maven: CI_MAVEN_DAEMON_REPOS lists the repositories built with the Maven Daemon (comma separated URLs, or
+     * "*" for all) and CI_MVND_COMMAND its executable, CI_MODULE_THREADS is the maven -T value of multi-module
+     * projects (e.g. "1C"), their modules are built one after the other if it is not set.</li>
+     * <li>JDK matrix: CI_JDK_MATRIX lists the JDKs every push is built with at the same time as comma separated
+     * label=JAVA_HOME entries (e.g. "17=/opt/jdk-17,21=/opt/jdk-21"), the JDK of the server if it is not set.</li>
+     * <li>Tests: CI_TEST_RERUNS reruns the failing tests alone (2 times by default, 0 to disable), CI_FLAKE_POLICY
+     * tells whether a build whose failing tests all passed on a rerun succeeds ("pass") or fails ("fail", the
+     * default), CI_FAIL_FAST set to "notify" sends a notification on the first failure and "stop" also stops the
+     * test run ("off" by default).</li>
+     * <li>Test durations: CI_TEST_DURATION_WINDOW, CI_TEST_REGRESSION_THRESHOLD and CI_TEST_REGRESSION_MIN_SECONDS,
+     * see TestDurationHistory.</li>
+     * <li>Bisection: CI_BISECT set to "on" searches the first failing commit of a failing push, probing up to
+     * CI_BISECT_PROBES commits at the same time, see findCulprit().</li>
+     * <li>Admission: CI_RATE_LIMIT_BURST, CI_RATE_LIMIT_PER_MINUTE and CI_MAX_PENDING_BUILDS, see
+     * AdmissionController.</li>
+     * <li>Journal: CI_JOURNAL_DIR (the dd2480-journal temporary folder by default) and CI_JOURNAL_MAX_ATTEMPTS, see
+     * JobJournal and replayJournal().</li>
+     * <li>Concurrency: CI_BUILD_WORKERS builds at first, then every CI_CONCURRENCY_ADJUST_SECONDS between
+     * CI_BUILD_WORKERS_MIN and CI_BUILD_WORKERS_MAX depending on CI_MAX_LOAD_PER_CORE, CI_MIN_FREE_MEMORY_PERCENT
+     * and CI_MAX_LATENCY_INFLATION, see ConcurrencyLimiter. The same limit bounds the maven processes running at
+     * the same time, JDK matrix entries and bisection probes included, see MavenRunPermits.</li>
+     * <li>Scheduling: shortest expected build first unless waiting for more than CI_SCHEDULER_AGING_SECONDS, see
+     * BuildScheduler.</li>
+     * <li>Workspaces: CI_WORKSPACE_MEMORY_ROOT ("off" to disable it), CI_WORKSPACE_MEMORY_MB, CI_WORKSPACE_DISK_ROOT
+     * and CI_WORKSPACE_DEFAULT_MB, see WorkspacePolicy.</li>
+     * <li>Ignored paths: CI_IGNORED_PATHS, see PathFilter, a push changing only such paths gets the verdict of its
+     * parent without being built.</li>
+     * </ul>
+     *
+     * @throws IOException if the job journal cannot be opened
      */
-    public CIServer() {
+    public CIServer() throws IOException {
         super();
+        this.logArchive = new BuildLogArchive(Path.of(System.getProperty("java.io.tmpdir"), "dd2480-logs"),
+                Long.parseLong(getEnv("CI_LOG_ARCHIVE_MB", "1024")) * 1024 * 1024);
+        this.publicUrl = getEnv("CI_PUBLIC_URL", "http://localhost:8027");
+        this.mavenDaemonRepos = Set.copyOf(Arrays.asList(getEnv("CI_MAVEN_DAEMON_REPOS", "").split("\\s*,\\s*")));
+        this.mavenDaemonCommand = getEnv("CI_MVND_COMMAND", "mvnd");
+        this.moduleThreads = System.getenv("CI_MODULE_THREADS");
+        for (String entry : getEnv("CI_JDK_MATRIX", "").split("\\s*,\\s*")) {
+            if (entry.isBlank())
+                continue;
+            String[] labelAndHome = entry.split("=", 2);
+            if (labelAndHome.length != 2)
+                throw new IllegalArgumentException("Invalid CI_JDK_MATRIX entry, expected label=JAVA_HOME: " + entry);
+            jdkMatrix.put(labelAndHome[0], labelAndHome[1]);
+        }
+        this.testReruns = Integer.parseInt(getEnv("CI_TEST_RERUNS", "2"));
+        this.flakePolicy = getEnv("CI_FLAKE_POLICY", "fail");
+        this.bisectEnabled = getEnv("CI_BISECT", "off").equals("on");
+        this.bisectProbes = Integer.parseInt(getEnv("CI_BISECT_PROBES",
+                Integer.toString(Math.min(4, Math.max(1, Runtime.getRuntime().availableProcessors() / 2)))));
+        this.admissionController = new AdmissionController(
+                Integer.parseInt(getEnv("CI_RATE_LIMIT_BURST", "5")),
+                Double.parseDouble(getEnv("CI_RATE_LIMIT_PER_MINUTE", "10")),
+                Integer.parseInt(getEnv("CI_MAX_PENDING_BUILDS", "8")),
+                30,
+                System::nanoTime
+        );
+        this.jobJournal = new JobJournal(
+                Path.of(getEnv("CI_JOURNAL_DIR", System.getProperty("java.io.tmpdir") + "/dd2480-journal")),
+                1000,
+                Integer.parseInt(getEnv("CI_JOURNAL_MAX_ATTEMPTS",
+                        Integer.toString(JobJournal.DEFAULT_MAX_ATTEMPTS))));
+        int workers = Integer.parseInt(getEnv("CI_BUILD_WORKERS", "2"));
+        this.concurrencyLimiter = new ConcurrencyLimiter(
+                workers,
+                Integer.parseInt(getEnv("CI_BUILD_WORKERS_MIN", "1")),
+                Integer.parseInt(getEnv("CI_BUILD_WORKERS_MAX",
+                        Integer.toString(Math.max(workers, Runtime.getRuntime().availableProcessors())))),
+                Double.parseDouble(getEnv("CI_MAX_LOAD_PER_CORE", "1.0")),
+                Double.parseDouble(getEnv("CI_MIN_FREE_MEMORY_PERCENT", "10")) / 100,
+                Double.parseDouble(getEnv("CI_MAX_LATENCY_INFLATION", "1.5")),
+                0.7,
+                60_000,
+                ConcurrencyLimiter.HostLoad::sample,
+                System::currentTimeMillis
+        );
+        this.scheduler = new BuildScheduler<>(
+                concurrencyLimiter.getLimit(),
+                Long.parseLong(getEnv("CI_SCHEDULER_AGING_SECONDS", "600")) * 1000,
+                System::currentTimeMillis
+        );
+        this.mavenRunPermits = new MavenRunPermits(concurrencyLimiter.getLimit());
+        long adjustSeconds = Long.parseLong(getEnv("CI_CONCURRENCY_ADJUST_SECONDS", "15"));
+        concurrencyAdjuster.scheduleWithFixedDelay(() -> {
+                    // A build fanning out to its JDK matrix or to bisection probes runs several maven processes
+                    int limit = concurrencyLimiter.adjust(scheduler.getQueued() + mavenRunPermits.getWaiting(),
+                            Math.max(scheduler.getRunning(), mavenRunPermits.getActive()));
+                    scheduler.setConcurrency(limit);
+                    mavenRunPermits.setLimit(limit);
+                },
+                adjustSeconds, adjustSeconds, TimeUnit.SECONDS);
+        String memoryRoot = getEnv("CI_WORKSPACE_MEMORY_ROOT", "/dev/shm/dd2480-builds");
+        this.workspacePolicy = new WorkspacePolicy(
+                memoryRoot.equals("off") ? null : Path.of(memoryRoot),
+                Path.of(getEnv("CI_WORKSPACE_DISK_ROOT", WebhookJSONAnalyser.getDefaultWorkspaceRoot().toString())),
+                Long.parseLong(getEnv("CI_WORKSPACE_MEMORY_MB", "2048")) * 1024 * 1024,
+                Long.parseLong(getEnv("CI_WORKSPACE_DEFAULT_MB", "256")) * 1024 * 1024
+        );
+        this.pathFilter = new PathFilter(getEnv("CI_IGNORED_PATHS", ""));
+        this.failFastMode = getEnv("CI_FAIL_FAST", "off");
+        this.testDurations = new TestDurationHistory(
+                Integer.parseInt(getEnv("CI_TEST_DURATION_WINDOW", "20")),
+                3,
+                Double.parseDouble(getEnv("CI_TEST_REGRESSION_THRESHOLD", "0.5")),
+                Double.parseDouble(getEnv("CI_TEST_REGRESSION_MIN_SECONDS", "0.05"))
+        );
     }
 
     /**
      * Handles incoming HTTP requests for the CI server.
      * <p>
-     * This method processes HTTP requests by reading the JSON payload from the request body,
-     * extracting relevant data such as the branch reference, repository URL, and commit hash.
-     * It then clones the specified repository to a temporary directory and resets it to the
-     * exact state of the specified commit. The method responds to the client with a confirmation
-     * message indicating that the server has received the request.
+     * This method processes the webhook requests by reading the JSON payload from the request body, extracting
+     * relevant data such as the branch reference, repository URL, and commit hash, and queuing the build of the
+     * commit. The repository is cloned and built later by a worker, see queueBuild() and runBuild().
      * <p>
      * Process Overview:
-     * 1. Sets the response content type to HTML and the status to OK.
-     * 2. Reads the JSON payload from the request body.
-     * 3. Parses the JSON data to extract the branch reference, repository URL, and commit hash.
-     * 4. Converts the branch reference into a proper branch name.
-     * 5. Calls the `cloneRepo` method to clone the repository and reset it to the specified commit.
-     * 6. Use the cloned repository for code validation process.
-     * 7. Sends a confirmation message back to the client indicating successful handling of the request.
+     * 1. Reads the JSON payload from the request body.
+     * 2. Parses the JSON data to extract the branch reference, repository URL, and commit hash, a payload that
+     *    cannot be parsed is answered with 200 and a greeting.
+     * 3. Attaches the request to the build of the same repository and commit if one is already queued or running.
+     * 4. Otherwise goes through admission control, answering 429 (repository rate limit) or 503 (server saturated)
+     *    with a Retry-After header when the build is rejected, then records the job in the journal and queues it.
+     * 5. Answers 202 with a JSON status giving the position of the build in the queue and its predicted duration
+     *    and end, see getStatus().
      * </p>
+     * GET requests on /tests/durations are answered with the test duration statistics of a repository instead,
+     * see handleTestDurations(), GET requests on /logs/{buildId} with an archived build log, see handleLogs(),
+     * GET requests on /status/{id} with the status of a build, see handleStatus(), and GET requests on /metrics
+     * with the server metrics, see handleMetrics().
      * @param target      The target URL of the request.
      * @param baseRequest The base request object, which provides access to request and response details.
      * @param request     The HttpServletRequest containing the client's request data.
@@ -58,9 +278,26 @@ public class CIServer extends AbstractHandler {
                        HttpServletRequest request,
                        HttpServletResponse response)
             throws IOException, ServletException {
+        baseRequest.setHandled(true);
+        if ("GET".equals(request.getMethod()) && target.equals("/tests/durations")) {
+            handleTestDurations(request, response);
+            return;
+        }
+        if ("GET".equals(request.getMethod()) && target.startsWith("/logs/")) {
+            handleLogs(target.substring("/logs/".length()), request, response);
+            return;
+        }
+        if ("GET".equals(request.getMethod()) && target.startsWith("/status/")) {
+            handleStatus(target.substring("/status/".length()), response);
+            return;
+        }
+        if ("GET".equals(request.getMethod()) && target.equals("/metrics")) {
+            handleMetrics(response);
+            return;
+        }
+
         response.setContentType("text/html;charset=utf-8");
         response.setStatus(HttpServletResponse.SC_OK);
-        baseRequest.setHandled(true);
 
         // Read the JSON payload
         StringBuilder payloadBuilder = new StringBuilder();
@@ -72,11 +309,195 @@ public class CIServer extends AbstractHandler {
             }
         }
 
+        WebhookJSONAnalyser payloadAnalyser;
+        try {
+            payloadAnalyser = new WebhookJSONAnalyser(payloadBuilder.toString(), false);
+        } catch (RuntimeException e) {
+            System.err.println("Failed to parse payload from last request" + e.getMessage());
+            response.getWriter().println("The CI server says 'Hello!'");
+            return;
+        }
+
+        // Redelivered webhooks and branches pointing at the same commit attach to the build already running,
+        // they do not start any new work so only the request leading a new build goes through admission control
+        String buildKey = payloadAnalyser.getRepoURL() + "@" + payloadAnalyser.getCommitHash();
+        AdmissionController.Decision[] rejection = new AdmissionController.Decision[1];
+        String[] leaderStatusId = new String[1];
+        var flight = inFlightBuilds.runAsync(buildKey, () -> {
+            var decision = admissionController.admit(payloadAnalyser.getRepoURL());
+            if (decision.status() != AdmissionController.Status.ADMITTED) {
+                rejection[0] = decision;
+                return CompletableFuture.failedFuture(
+                        new IllegalStateException("Build rejected (" + decision.status() + ")"));
+            }
+            // The job is on disk before it is queued, so a restart cannot lose it
+            String jobId = jobJournal.accepted(payloadAnalyser.toJSON().toString());
+            leaderStatusId[0] = jobId;
+            CompletableFuture<BuildResult> build;
+            try {
+                build = queueBuild(buildKey, jobId, jobId, payloadAnalyser);
+            } catch (RuntimeException e) {
+                jobJournal.finished(jobId, false);
+                build = CompletableFuture.failedFuture(e);
+            }
+            build.whenComplete((result, error) -> admissionController.release());
+            return build;
+        });
+        if (rejection[0] != null) {
+            var decision = rejection[0];
+            response.setStatus(decision.status() == AdmissionController.Status.RATE_LIMITED
+                    ? 429 : HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", Long.toString(decision.retryAfterSeconds()));
+            response.getWriter().println("Build of commit " + payloadAnalyser.getCommitHash()
+                    + " rejected (" + decision.status() + "), retry in " + decision.retryAfterSeconds() + "s");
+            return;
+        }
+
+        String id = flight.leader() ? leaderStatusId[0] : statusIds.get(buildKey);
+        JSONObject status = id == null ? null : getStatus(id);
+        if (status == null)
+            status = new JSONObject().put("state", "pending");
+        status.put("commit", payloadAnalyser.getCommitHash()).put("attached", !flight.leader());
+
+        response.setContentType("application/json;charset=utf-8");
+        response.setStatus(HttpServletResponse.SC_ACCEPTED);
+        response.getWriter().println(status.toString(2));
+    }
+
+    /**
+     * Queues again the jobs that the journal holds as accepted or running, i.e. the jobs that were interrupted by
+     * the last stop of the server. They are scheduled like the builds requested through the webhook.
+     */
+    public void replayJournal() {
+        for (var job : jobJournal.getAbandonedJobs())
+            System.err.println("Giving up job " + job.id() + " after " + job.attempts() + " unfinished attempts: "
+                    + job.payload());
+        var jobs = jobJournal.getRecoveredJobs();
+        if (jobs.isEmpty())
+            return;
+        System.out.println("Replaying " + jobs.size() + " unfinished job(s) from the job journal");
+        for (var job : jobs) {
+            try {
+                var payloadAnalyser = new WebhookJSONAnalyser(job.payload(), false);
+                String buildKey = payloadAnalyser.getRepoURL() + "@" + payloadAnalyser.getCommitHash();
+                var flight = inFlightBuilds.runAsync(buildKey,
+                        () -> queueBuild(buildKey, job.id(), job.id(), payloadAnalyser));
+                if (!flight.leader())
+                    jobJournal.finished(job.id(), true);
+            } catch (RuntimeException e) {
+                System.err.println("Failed to replay job " + job.id() + ": " + e.getMessage());
+                jobJournal.finished(job.id(), false);
+            }
+        }
+    }
+
+    /**
+     * Queues a build in the scheduler with the duration predicted from the previous builds of its branch. Once the
+     * build is over its final status is kept, so that it can still be queried through handleStatus().
+     *
+     * @param buildKey        the repository and commit of the build
+     * @param statusId        the identifier used to query the status of the build
+     * @param jobId           the journal identifier of the job, or null if the job is not journaled
+     * @param payloadAnalyser the analyser of the webhook payload, created without cloning
+     * @return the future completed with the result of the build
+     */
+    private CompletableFuture<BuildResult> queueBuild(String buildKey, String statusId, String jobId,
+                                                      WebhookJSONAnalyser payloadAnalyser) {
+        statusIds.put(buildKey, statusId);
+        Set<String> pushedFiles = payloadAnalyser.getPushedFiles();
+        // A push changing only ignored paths inherits the verdict of its parent, which takes no time, but only if the
+        // parent has a verdict, otherwise it is built like any other push
+        boolean inherits = pushedFiles != null && pathFilter.onlyIgnored(payloadAnalyser.getRepoURL(), pushedFiles)
+                && commitVerdicts.containsKey(payloadAnalyser.getRepoURL() + "@" + payloadAnalyser.getBeforeHash());
+        long expectedMillis = inherits ? 0
+                : durationModel.predict(payloadAnalyser.getRepoURL(), payloadAnalyser.getCommitBranch());
+        return scheduler.submit(statusId, expectedMillis, () -> runJournaledBuild(jobId, payloadAnalyser))
+                .whenComplete((result, error) -> {
+                    JSONObject status = new JSONObject()
+                            .put("id", statusId)
+                            .put("commit", payloadAnalyser.getCommitHash())
+                            .put("status", publicUrl + "/status/" + statusId);
+                    if (error == null) {
+                        status.put("state", "finished").put("success", result.success())
+                                .put("subject", result.subject());
+                    } else if (error instanceof InterruptedException) {
+                        System.err.println("Compilation or testing process was interrupted");
+                        status.put("state", "interrupted");
+                    } else {
+                        System.err.println("Failed to build the commit of the last request " + error);
+                        status.put("state", "failed").put("error", String.valueOf(error.getMessage()));
+                    }
+                    finishedBuilds.put(statusId, status);
+                    statusIds.remove(buildKey, statusId);
+                });
+    }
+
+    /**
+     * Runs a build and records its state transitions in the job journal. A build interrupted before its end stays
+     * unfinished in the journal so that it is run again after a restart.
+     *
+     * @param jobId           the journal identifier of the job, or null if the job is not journaled
+     * @param payloadAnalyser the analyser of the webhook payload, created without cloning
+     * @return the result sent in the notification
+     * @throws Exception if the build fails, see runBuild()
+     */
+    private BuildResult runJournaledBuild(String jobId, WebhookJSONAnalyser payloadAnalyser) throws Exception {
+        if (jobId == null)
+            return runBuild(payloadAnalyser);
+        jobJournal.running(jobId);
+        try {
+            BuildResult result = runBuild(payloadAnalyser);
+            jobJournal.finished(jobId, true);
+            return result;
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            jobJournal.finished(jobId, false);
+            throw e;
+        }
+    }
+
+    /**
+     * Clones the commit described by the given analyser, verifies its compilation and tests and sends the
+     * notification email. The workspace is only locked while it is cloned or deleted, the builds of the same
+     * repository and commit are deduplicated before they get here.
+     *
+     * @param payloadAnalyser the analyser of the webhook payload, created without cloning
+     * @return the result sent in the notification
+     * @throws IOException          if the build log cannot be archived or the maven output cannot be read
+     * @throws InterruptedException if the compilation or the tests get interrupted
+     */
+    private BuildResult runBuild(WebhookJSONAnalyser payloadAnalyser) throws IOException, InterruptedException {
+        BuildResult inherited = inheritVerdict(payloadAnalyser, payloadAnalyser::getPushedFiles);
+        if (inherited != null)
+            return inherited;
+
+        var placement = workspacePolicy.reserve(payloadAnalyser.getRepoURL());
+        List<CompletableFuture<MatrixEntryResult>> matrixBuilds = new ArrayList<>();
         try {
-            WebhookJSONAnalyser payloadAnalyser = new WebhookJSONAnalyser(payloadBuilder.toString());
+            long cloneStart = System.currentTimeMillis();
+            if (payloadAnalyser.cloneRepo(placement.root()) == null)
+                throw new IllegalStateException("The repo is not cloned successfully");
+            long cloneMillis = System.currentTimeMillis() - cloneStart;
+            if (payloadAnalyser.getPushedFiles() == null) {
+                inherited = inheritVerdict(payloadAnalyser,
+                        () -> payloadAnalyser.listChangedFiles(payloadAnalyser.getBeforeHash()));
+                if (inherited != null)
+                    return inherited;
+            }
+            String buildId = payloadAnalyser.getCommitHash() + "-" + System.currentTimeMillis();
+
+            // The other entries of the JDK matrix are built in copies of the checkout while this thread builds the
+            // first one, so the matrix takes about as long as its slowest entry
+            jdkMatrix.entrySet().stream().skip(1).forEach(entry -> matrixBuilds.add(CompletableFuture.supplyAsync(
+                    () -> runMatrixEntry(payloadAnalyser, placement, entry.getKey(), entry.getValue(), buildId),
+                    matrixWorkers)));
 
             // Code Validation
-            var codeVerifier = new CodeVerifier(payloadAnalyser.getRepoPath());
+            var codeVerifier = new CodeVerifier(payloadAnalyser.getRepoPath(),
+                    getMavenExecutor(payloadAnalyser.getRepoURL(), getPrimaryJavaHome()));
+            codeVerifier.setModuleThreads(moduleThreads);
+            codeVerifier.setRunPermits(mavenRunPermits);
 
             var commitHash = payloadAnalyser.getCommitHash();
             var commitMail = payloadAnalyser.getCommitMail();
@@ -88,20 +509,49 @@ public class CIServer extends AbstractHandler {
 
             String mailSubject;
             String message;
+            boolean success = false;
+            // Tests still failing at the end of the build, probed when bisecting
+            Set<String> stillFailing = new LinkedHashSet<>();
+            StringBuilder buildLog = new StringBuilder();
 
             // Verifies the code compilation and runs the associated tests if compilation is successful.
             // If the code fails to compile, retrieves the compilation output.
             // If the tests fail, retrieves the test result and output for further notification.
-            if (codeVerifier.verifyCompilation()) {
+            boolean compiled = codeVerifier.verifyCompilation();
+            buildLog.append(codeVerifier.getCompilationOutput());
+            if (compiled) {
+
+                FailFastMonitor failFastMonitor = null;
+                if (!failFastMode.equals("off")) {
+                    failFastMonitor = new FailFastMonitor(
+                            reason -> sendEarlyFailure(commitMail, commitHash, reason),
+                            failFastMode.equals("stop"));
+                    codeVerifier.setFailFastMonitor(failFastMonitor);
+                }
 
                 var testResult = codeVerifier.runTests();
                 var testOutputXml = codeVerifier.getTestXml();
+                buildLog.append(codeVerifier.getTestOutput());
+
+                // The failing tests are rerun alone, in the same workspace, to tell flaky tests from real failures
+                List<TestRerun> reruns = testResult || testReruns == 0
+                        ? List.of() : codeVerifier.rerunFailedTests(testReruns);
+                buildLog.append(codeVerifier.getRerunOutput());
+                boolean stopped = failFastMonitor != null && failFastMonitor.hasStopped();
+                boolean onlyFlaky = !stopped && !reruns.isEmpty() && reruns.stream().allMatch(TestRerun::flaky);
+                success = testResult || (onlyFlaky && flakePolicy.equals("pass"));
 
                 if (testResult ){
                     mailSubject = "Compilation and tests successful";
                     message = "Successfully compiled and ran all tests!";
+                } else if (success) {
+                    mailSubject = "Compilation and tests successful, flaky tests";
+                    message = "All tests passed, some of them only when rerun.";
                 } else {
                     StringBuilder messageBuilder = new StringBuilder("Test failures: " + System.lineSeparator());
+                    if (stopped)
+                        messageBuilder.append("(test run stopped at the first failure, later tests were not run)")
+                                .append(System.lineSeparator());
                     for(Document doc: testOutputXml){
                         StringBuilder failingTests = getFailingTests(doc);
                         messageBuilder.append(failingTests + System.lineSeparator());
@@ -109,24 +559,125 @@ public class CIServer extends AbstractHandler {
                     mailSubject = "Compilation successful, test failures";
                     message = messageBuilder.toString();
                 }
+                message += getRerunResults(reruns);
+                if (!reruns.isEmpty())
+                    reruns.stream().filter(rerun -> !rerun.flaky()).forEach(rerun -> stillFailing.add(rerun.id()));
+                else
+                    TestCaseResult.fromReports(testOutputXml).stream().filter(TestCaseResult::failed)
+                            .forEach(result -> stillFailing.add(result.id()));
+
+                if (!codeVerifier.getModules().isEmpty())
+                    message += getModuleResults(codeVerifier.getModules(), codeVerifier.getTestXmlByModule());
+
+                // Keep the durations of this build and flag the tests that became slower than usual
+                var regressions = testDurations.record(repoURL, commitBranch,
+                        TestCaseResult.fromReports(testOutputXml));
+                message += getDurationRegressions(regressions);
 
             } else {
-                var compilationOutput = codeVerifier.getCompilationOutput();
                 mailSubject = "Compilation failed";
-                message = compilationOutput;
+                message = "";
+            }
+
+            if (!jdkMatrix.isEmpty()) {
+                List<MatrixEntryResult> entries = new ArrayList<>();
+                entries.add(new MatrixEntryResult(jdkMatrix.keySet().iterator().next(), success, mailSubject,
+                        System.currentTimeMillis() - cloneStart - cloneMillis, buildId));
+                matrixBuilds.forEach(matrixBuild -> entries.add(matrixBuild.join()));
+                message += getMatrixResults(entries);
+                var failingJdks = entries.stream().filter(entry -> !entry.success()).map(MatrixEntryResult::label)
+                        .toList();
+                if (success && !failingJdks.isEmpty()) {
+                    success = false;
+                    mailSubject = "Build failures on JDK " + String.join(", ", failingJdks);
+                }
             }
 
+            if (success)
+                lastGreenCommits.put(repoURL + "@" + commitBranch, commitHash);
+            else if (bisectEnabled)
+                message += findCulprit(payloadAnalyser, compiled, stillFailing);
+
+            // Only the end of the log goes in the notification, the full log is served by the server
+            logArchive.write(buildId, buildLog.toString());
+            if (!compiled || message.startsWith("Test failures"))
+                message += System.lineSeparator() + "Last lines of the build log:" + System.lineSeparator()
+                        + logArchive.tail(buildId, LOG_EXCERPT_BYTES);
+            message += System.lineSeparator() + "Full build log: " + publicUrl + "/logs/" + buildId;
+            message += getBuildTimings(codeVerifier.getPhaseTimings());
+            Map<String, Long> phaseMillis = new LinkedHashMap<>(Map.of("clone", cloneMillis));
+            for (PhaseTiming timing : codeVerifier.getPhaseTimings())
+                phaseMillis.merge(timing.phase(), timing.totalMillis(), Long::sum);
+            // Only the phases the model predicts are compared, and only against the branch's own history, so the
+            // bisection, the JDK matrix or an inherited verdict do not pass for a slowdown of the host
+            if (durationModel.hasHistory(repoURL, commitBranch))
+                concurrencyLimiter.recordLatency(durationModel.predict(repoURL, commitBranch),
+                        phaseMillis.values().stream().mapToLong(Long::longValue).sum());
+            durationModel.record(repoURL, commitBranch, phaseMillis);
+            message += getResourceUsage(codeVerifier.getResourceUsage());
+            resourceMetrics.record(repoURL, codeVerifier.getResourceUsage());
 
             Email email = new Email(commitMail);
             email.send(mailSubject, message);
+            var result = new BuildResult(mailSubject, message, success, codeVerifier.getResourceUsage());
+            commitVerdicts.put(repoURL + "@" + commitHash, result);
+            return result;
+        } finally {
+            // The copies must not outlive the checkout they were made from
+            matrixBuilds.forEach(matrixBuild -> matrixBuild.handle((result, error) -> result).join());
+            releaseWorkspace(payloadAnalyser, placement);
+        }
+    }
 
-        } catch (InterruptedException e) {
-            System.err.println("Compilation or testing process was interrupted");
+    /**
+     * Gives a commit the verdict of the previous head of its branch when the files changed since then are all
+     * ignored for its repository, and sends the notification email. Nothing is inherited if the previous head has
+     * not been built since the server started.
+     *
+     * @param payloadAnalyser the analyser of the webhook payload
+     * @param changedFiles    lists the files changed since the previous head, null if they cannot be listed, only
+     *                        called if the previous head has a verdict
+     * @return the inherited result, or null if the commit must be built
+     */
+    private BuildResult inheritVerdict(WebhookJSONAnalyser payloadAnalyser, Supplier<Set<String>> changedFiles) {
+        String repoURL = payloadAnalyser.getRepoURL();
+        String parent = payloadAnalyser.getBeforeHash();
+        if (parent == null || !pathFilter.hasRules(repoURL))
+            return null;
+        BuildResult parentResult = commitVerdicts.get(repoURL + "@" + parent);
+        if (parentResult == null)
+            return null;
+        Set<String> files = changedFiles.get();
+        if (files == null || !pathFilter.onlyIgnored(repoURL, files))
+            return null;
+
+        String subject = parentResult.subject() + " (inherited, only ignored paths changed)";
+        String message = "Build skipped, the commits since " + parent + " only change paths that cannot affect the"
+                + " build: " + String.join(", ", files) + System.lineSeparator()
+                + "Verdict of " + parent + ": " + parentResult.subject();
+        var result = new BuildResult(subject, message, parentResult.success(), List.of());
+        commitVerdicts.put(repoURL + "@" + payloadAnalyser.getCommitHash(), result);
+        if (result.success())
+            lastGreenCommits.put(repoURL + "@" + payloadAnalyser.getCommitBranch(), payloadAnalyser.getCommitHash());
+        inheritedBuilds.increment();
+        new Email(payloadAnalyser.getCommitMail()).send(subject, message);
+        return result;
+    }
+
+    //Method for measuring the workspace of a finished build and deleting it if it takes memory
+    private void releaseWorkspace(WebhookJSONAnalyser payloadAnalyser, WorkspacePolicy.Placement placement) {
+        long size = -1;
+        try {
+            if (payloadAnalyser.getRepoPath() != null) {
+                size = WorkspacePolicy.sizeOf(Path.of(payloadAnalyser.getRepoPath()));
+                if (placement.tier() == WorkspacePolicy.Tier.MEMORY)
+                    payloadAnalyser.deleteRepo();
+            }
         } catch (RuntimeException e) {
-            System.err.println("Failed to parse payload from last request" + e.getMessage());
+            System.err.println("Failed to release the workspace of the last build: " + e.getMessage());
+        } finally {
+            workspacePolicy.release(placement, size);
         }
-
-        response.getWriter().println("The CI server says 'Hello!'");
     }
 
    //Method for extracting names of failing tests
@@ -150,6 +701,419 @@ public class CIServer extends AbstractHandler {
         return failingTests;
     }
 
+    /**
+     * Bisects the commits between the last green commit of the branch, or the previous head of the branch if no
+     * build of the branch succeeded since the server started, and the failing head to find the first failing
+     * commit. Each probe checks a commit out in a workspace cloned from the build workspace and runs only the tests
+     * failing on the head, or only the compilation if the head does not compile.
+     *
+     * @param payloadAnalyser the analyser of the failing build, whose workspace is cloned
+     * @param compiled        true if the head compiles
+     * @param failingTests    the tests failing on the head
+     * @return the description of the culprit for the notification, empty if there is nothing to bisect
+     */
+    private String findCulprit(WebhookJSONAnalyser payloadAnalyser, boolean compiled, Set<String> failingTests) {
+        String lastGreen = lastGreenCommits.getOrDefault(payloadAnalyser.getRepoURL() + "@"
+                + payloadAnalyser.getCommitBranch(), payloadAnalyser.getBeforeHash());
+        // A new branch has no previous head, and a failure without failing test cannot be probed cheaply
+        if (lastGreen == null || lastGreen.matches("0+") || (compiled && failingTests.isEmpty()))
+            return "";
+
+        // The probes are not covered by the memory budget of the workspaces, they go to the disk
+        var workspace = new BisectWorkspace(payloadAnalyser.getRepoPath(), workspacePolicy.getDiskRoot());
+        try {
+            var commits = workspace.listCommits(lastGreen, payloadAnalyser.getCommitHash());
+            if (commits.isEmpty())
+                return "";
+            var result = new Bisector(bisectProbes).bisect(
+                    commits.stream().map(BisectWorkspace.Commit::id).toList(),
+                    (commit, slot) -> {
+                        var verifier = new CodeVerifier(workspace.checkout(slot, commit),
+                                getMavenExecutor(payloadAnalyser.getRepoURL(), getPrimaryJavaHome()));
+                        verifier.setModuleThreads(moduleThreads);
+                        verifier.setRunPermits(mavenRunPermits);
+                        return compiled ? verifier.runTests(failingTests) : verifier.verifyCompilation();
+                    });
+            var culprit = commits.stream().filter(commit -> commit.id().equals(result.firstBad())).findFirst()
+                    .orElseThrow();
+            return System.lineSeparator() + String.format("First failing commit, bisected over %d commits since %s "
+                            + "(%d probed in %d rounds):", commits.size(), lastGreen, result.probes(), result.rounds())
+                    + System.lineSeparator() + String.format("%s by %s <%s>: %s", culprit.id(), culprit.authorName(),
+                    culprit.authorEmail(), culprit.summary()) + System.lineSeparator();
+        } catch (IOException | ExecutionException e) {
+            System.err.println("Failed to bisect the commits of the last request: " + e.getMessage());
+            return "";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "";
+        } finally {
+            try {
+                workspace.deleteProbes();
+            } catch (IOException e) {
+                System.err.println("Failed to delete the bisection workspaces: " + e.getMessage());
+            }
+        }
+    }
+
+    //Method for listing the failing tests that passed on a rerun (flaky) and those that failed every rerun
+    private static String getRerunResults(List<TestRerun> reruns) {
+        if (reruns.isEmpty())
+            return "";
+        StringBuilder builder = new StringBuilder(System.lineSeparator() + "Reruns of the failing tests:"
+                + System.lineSeparator());
+        for (TestRerun rerun : reruns) {
+            builder.append(rerun.id()).append(": ")
+                    .append(rerun.flaky() ? "flaky, passed on rerun " + rerun.attempts()
+                            : "failed all " + rerun.attempts() + " reruns")
+                    .append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    //Method for breaking the test results of a multi-module project down per module
+    private static String getModuleResults(List<String> modules, Map<String, List<Document>> testXmlByModule) {
+        StringBuilder builder = new StringBuilder(System.lineSeparator() + "Results per module:"
+                + System.lineSeparator());
+        for (String module : modules) {
+            var docs = testXmlByModule.get(module);
+            builder.append(module).append(": ");
+            if (docs == null || docs.isEmpty()) {
+                builder.append("no test report (no tests, not built or skipped)").append(System.lineSeparator());
+                continue;
+            }
+            var results = TestCaseResult.fromReports(docs);
+            var failing = results.stream().filter(TestCaseResult::failed).map(TestCaseResult::id).toList();
+            builder.append(results.size()).append(" tests, ")
+                    .append(failing.isEmpty() ? "all passed" : failing.size() + " failing " + failing)
+                    .append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    //Method for choosing between the Maven Daemon and a forked maven for a repository, running the given JDK
+    private MavenExecutor getMavenExecutor(String repoURL, String javaHome) {
+        Map<String, String> environment = javaHome == null ? Map.of() : Map.of(
+                "JAVA_HOME", javaHome,
+                "PATH", javaHome + File.separator + "bin" + File.pathSeparator
+                        + Objects.toString(System.getenv("PATH"), ""));
+        if (mavenDaemonRepos.contains("*") || mavenDaemonRepos.contains(repoURL))
+            return new DaemonMavenExecutor(mavenDaemonCommand, environment);
+        return new ForkedMavenExecutor(environment);
+    }
+
+    //Method for getting the JAVA_HOME of the first entry of the JDK matrix, null to use the JDK of the server
+    private String getPrimaryJavaHome() {
+        return jdkMatrix.isEmpty() ? null : jdkMatrix.values().iterator().next();
+    }
+
+    /**
+     * Builds one entry of the JDK matrix in a copy of the checkout of the build, the copy is deleted once the entry
+     * is built. The failing tests are rerun like in the checkout itself.
+     *
+     * @param payloadAnalyser the analyser of the build, whose workspace is copied
+     * @param checkout        the placement of the workspace of the build
+     * @param label           the name of the entry
+     * @param javaHome        the JAVA_HOME of the entry
+     * @param buildId         the identifier of the build, the log of the entry is archived as buildId-jdkLabel
+     * @return the outcome of the entry, a failed one if the entry could not be built
+     */
+    private MatrixEntryResult runMatrixEntry(WebhookJSONAnalyser payloadAnalyser, WorkspacePolicy.Placement checkout,
+                                             String label, String javaHome, String buildId) {
+        long start = System.currentTimeMillis();
+        String safeLabel = label.replaceAll("[^A-Za-z0-9._-]", "_");
+        String logId = buildId + "-jdk" + safeLabel;
+        // The copy stays on the filesystem of the checkout where it can, so that its files are linked, not copied
+        var copyPlacement = workspacePolicy.reserveCopy(checkout);
+        Path workspace = copyPlacement.root()
+                .resolve(Path.of(payloadAnalyser.getRepoPath()).getFileName() + "-jdk-" + safeLabel);
+        StringBuilder log = new StringBuilder();
+        boolean success = false;
+        String summary;
+        try {
+            WorkspaceCopier.delete(workspace);
+            int copied = WorkspaceCopier.copy(Path.of(payloadAnalyser.getRepoPath()), workspace);
+            if (copied > 0)
+                log.append(copied).append(" files copied instead of linked").append(System.lineSeparator());
+
+            var verifier = new CodeVerifier(workspace.toString(),
+                    getMavenExecutor(payloadAnalyser.getRepoURL(), javaHome));
+            verifier.setModuleThreads(moduleThreads);
+            verifier.setRunPermits(mavenRunPermits);
+            boolean compiled = verifier.verifyCompilation();
+            log.append(verifier.getCompilationOutput());
+            if (!compiled) {
+                summary = "Compilation failed";
+            } else {
+                boolean passed = verifier.runTests();
+                log.append(verifier.getTestOutput());
+                List<TestRerun> reruns = passed || testReruns == 0 ? List.of() : verifier.rerunFailedTests(testReruns);
+                log.append(verifier.getRerunOutput());
+                var failing = reruns.isEmpty()
+                        ? TestCaseResult.fromReports(verifier.getTestXml()).stream().filter(TestCaseResult::failed)
+                        .map(TestCaseResult::id).toList()
+                        : reruns.stream().filter(rerun -> !rerun.flaky()).map(TestRerun::id).toList();
+                var flaky = reruns.stream().filter(TestRerun::flaky).map(TestRerun::id).toList();
+                success = passed || (!reruns.isEmpty() && failing.isEmpty() && flakePolicy.equals("pass"));
+                if (passed)
+                    summary = "Compilation and tests successful";
+                else if (success)
+                    summary = "Compilation and tests successful, flaky tests " + flaky;
+                else
+                    summary = "Test failures " + failing + (flaky.isEmpty() ? "" : ", flaky tests " + flaky);
+            }
+        } catch (Exception e) {
+            if (e instanceof InterruptedException)
+                Thread.currentThread().interrupt();
+            summary = "Build error: " + e;
+            log.append(summary).append(System.lineSeparator());
+        } finally {
+            long size = -1;
+            try {
+                if (Files.exists(workspace))
+                    size = WorkspacePolicy.unsharedSizeOf(workspace);
+                WorkspaceCopier.delete(workspace);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Failed to delete the workspace of JDK " + label + ": " + e.getMessage());
+            } finally {
+                workspacePolicy.releaseCopy(copyPlacement, size);
+            }
+        }
+        try {
+            logArchive.write(logId, log.toString());
+        } catch (IOException e) {
+            System.err.println("Failed to archive the log of JDK " + label + ": " + e.getMessage());
+        }
+        return new MatrixEntryResult(label, success, summary, System.currentTimeMillis() - start, logId);
+    }
+
+    //Method for describing the outcome of each entry of the JDK matrix
+    private String getMatrixResults(List<MatrixEntryResult> entries) {
+        StringBuilder builder = new StringBuilder(System.lineSeparator() + "Results per JDK:" + System.lineSeparator());
+        for (MatrixEntryResult entry : entries) {
+            builder.append(String.format("JDK %s: %s (%.1fs), log: %s/logs/%s", entry.label(), entry.summary(),
+                    entry.wallMillis() / 1000.0, publicUrl, entry.logId())).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    //Method for describing the timing of each maven invocation and the startup time saved by the daemon
+    private String getBuildTimings(List<PhaseTiming> timings) {
+        StringBuilder builder = new StringBuilder(System.lineSeparator() + "Build timings:" + System.lineSeparator());
+        for (PhaseTiming timing : timings) {
+            averageMavenStartup.merge(timing.executor(), (double) timing.bootstrapMillis(),
+                    (average, sample) -> 0.8 * average + 0.2 * sample);
+            builder.append(String.format("%s: %d ms (%s maven, %d ms startup)", timing.phase(), timing.totalMillis(),
+                    timing.executor(), timing.bootstrapMillis()));
+            Double forkedStartup = averageMavenStartup.get("forked");
+            if (!timing.executor().equals("forked") && forkedStartup != null)
+                builder.append(String.format(", ~%d ms saved compared with a forked maven",
+                        Math.round(forkedStartup - timing.bootstrapMillis())));
+            builder.append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    //Method for describing the resources used by each maven invocation
+    private static String getResourceUsage(List<ResourceUsage> usage) {
+        StringBuilder builder = new StringBuilder(System.lineSeparator() + "Resource usage:" + System.lineSeparator());
+        for (ResourceUsage phase : usage) {
+            builder.append(String.format("%s: %.1fs CPU over %.1fs, peak RSS %d MB, %d threads, %d KB read, "
+                            + "%d KB written", phase.phase(), phase.cpuMillis() / 1000.0, phase.wallMillis() / 1000.0,
+                    phase.peakRssKb() / 1024, phase.peakThreads(), phase.readBytes() / 1024,
+                    phase.writeBytes() / 1024)).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    //Method for sending the early notification of the fail-fast mode without blocking the monitored test run
+    private static void sendEarlyFailure(String commitMail, String commitHash, String reason) {
+        CompletableFuture.runAsync(() -> new Email(commitMail).send("Tests failing (early notification)",
+                        "Commit " + commitHash + " is failing, the full summary will follow." + System.lineSeparator()
+                                + reason))
+                .exceptionally(e -> {
+                    System.err.println("Failed to send early failure notification: " + e.getMessage());
+                    return null;
+                });
+    }
+
+    //Method for listing the tests whose duration regressed in the notification
+    private String getDurationRegressions(List<TestDurationHistory.DurationStat> regressions) {
+        if (regressions.isEmpty())
+            return "";
+        StringBuilder builder = new StringBuilder(System.lineSeparator()
+                + String.format("Slower tests (more than +%.0f%% over their baseline):",
+                testDurations.getThreshold() * 100)
+                + System.lineSeparator());
+        for (var stat : regressions) {
+            builder.append(String.format("%s %.3fs (baseline %.3fs, x%.2f)", stat.id(), stat.latest(),
+                    stat.baseline(), stat.ratio())).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Answers with a JSON document listing the slowest and the most regressed tests of a repository branch.
+     * The repository URL is given by the "repo" query parameter, the branch by "branch" (defaults to "main")
+     * and the maximum number of entries per list by "limit" (defaults to 10).
+     *
+     * @param request  the HttpServletRequest holding the query parameters
+     * @param response the HttpServletResponse the JSON document is written to
+     * @throws IOException if the response cannot be written
+     */
+    private void handleTestDurations(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String repo = request.getParameter("repo");
+        String branch = request.getParameter("branch") == null ? "main" : request.getParameter("branch");
+        int limit;
+        try {
+            limit = request.getParameter("limit") == null ? 10 : Integer.parseInt(request.getParameter("limit"));
+        } catch (NumberFormatException e) {
+            limit = -1;
+        }
+        if (repo == null || limit < 0) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Expected a repo and an optional positive limit");
+            return;
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("repo", repo);
+        json.put("branch", branch);
+        json.put("slowestTests", toJSON(testDurations.slowestTests(repo, branch, limit)));
+        json.put("slowestClasses", toJSON(testDurations.slowestClasses(repo, branch, limit)));
+        json.put("mostRegressedTests", toJSON(testDurations.mostRegressedTests(repo, branch, limit)));
+
+        response.setContentType("application/json;charset=utf-8");
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.getWriter().println(json.toString(2));
+    }
+
+    /**
+     * Answers with a part of an archived build log as plain text. The "from" and "to" query parameters select a
+     * range of lines (starting at 1), otherwise the "tail" parameter gives the number of KB to return from the end
+     * of the log (defaults to 64).
+     *
+     * @param buildId  the identifier of the build, as linked in the notification
+     * @param request  the HttpServletRequest holding the query parameters
+     * @param response the HttpServletResponse the log is written to
+     * @throws IOException if the log cannot be read or the response cannot be written
+     */
+    private void handleLogs(String buildId, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (!logArchive.exists(buildId)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "No log for build " + buildId);
+            return;
+        }
+        String content;
+        try {
+            if (request.getParameter("from") != null || request.getParameter("to") != null) {
+                long from = request.getParameter("from") == null ? 1 : Long.parseLong(request.getParameter("from"));
+                long to = request.getParameter("to") == null
+                        ? logArchive.lineCount(buildId) : Long.parseLong(request.getParameter("to"));
+                content = logArchive.readLines(buildId, from, to);
+            } else {
+                long tailKb = request.getParameter("tail") == null ? 64 : Long.parseLong(request.getParameter("tail"));
+                content = logArchive.tail(buildId, tailKb * 1024);
+            }
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Expected numeric from, to or tail parameters");
+            return;
+        }
+        response.setContentType("text/plain;charset=utf-8");
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.getWriter().print(content);
+    }
+
+    /**
+     * Answers with the JSON status of a queued, running or recently finished build, see getStatus()
+     *
+     * @param id       the identifier returned in the webhook response
+     * @param response the HttpServletResponse the status is written to
+     * @throws IOException if the response cannot be written
+     */
+    private void handleStatus(String id, HttpServletResponse response) throws IOException {
+        JSONObject status = getStatus(id);
+        if (status == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "No build " + id);
+            return;
+        }
+        response.setContentType("application/json;charset=utf-8");
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.getWriter().println(status.toString(2));
+    }
+
+    /**
+     * Describes the state of a build. A queued or running build gets its position in the queue, its predicted
+     * duration and the predicted delays before it starts and finishes, a finished build its outcome.
+     *
+     * @param id the identifier of the build given to the scheduler
+     * @return the status, or null if the build is unknown or finished too long ago
+     */
+    private JSONObject getStatus(String id) {
+        var estimate = scheduler.estimate(id);
+        if (estimate.isEmpty()) {
+            JSONObject finished = finishedBuilds.get(id);
+            return finished == null ? null : new JSONObject(finished.toString());
+        }
+        var eta = estimate.get();
+        return new JSONObject()
+                .put("id", id)
+                .put("state", eta.running() ? "running" : "queued")
+                .put("position", eta.position())
+                .put("expectedSeconds", eta.expectedMillis() / 1000)
+                .put("startInSeconds", eta.startInMillis() / 1000)
+                .put("etaSeconds", eta.finishInMillis() / 1000)
+                .put("status", publicUrl + "/status/" + id);
+    }
+
+    /**
+     * Answers with the server metrics in the Prometheus text exposition format
+     *
+     * @param response the HttpServletResponse the metrics are written to
+     * @throws IOException if the response cannot be written
+     */
+    private void handleMetrics(HttpServletResponse response) throws IOException {
+        StringBuilder metrics = new StringBuilder();
+        metrics.append("# TYPE ci_builds_pending gauge\n")
+                .append("ci_builds_pending ").append(admissionController.getPending()).append('\n');
+        metrics.append("# TYPE ci_admission_total counter\n")
+                .append("ci_admission_total{result=\"admitted\"} ").append(admissionController.getAdmitted())
+                .append('\n')
+                .append("ci_admission_total{result=\"rate_limited\"} ").append(admissionController.getRateLimited())
+                .append('\n')
+                .append("ci_admission_total{result=\"saturated\"} ").append(admissionController.getSaturated())
+                .append('\n');
+        metrics.append("# TYPE ci_builds_queued gauge\n")
+                .append("ci_builds_queued ").append(scheduler.getQueued()).append('\n');
+        metrics.append("# TYPE ci_builds_running gauge\n")
+                .append("ci_builds_running ").append(scheduler.getRunning()).append('\n');
+        metrics.append("# TYPE ci_builds_inherited_total counter\n")
+                .append("ci_builds_inherited_total ").append(inheritedBuilds.sum()).append('\n');
+        concurrencyLimiter.appendPrometheus(metrics);
+        mavenRunPermits.appendPrometheus(metrics);
+        workspacePolicy.appendPrometheus(metrics);
+        resourceMetrics.appendPrometheus(metrics);
+
+        response.setContentType("text/plain;version=0.0.4;charset=utf-8");
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.getWriter().print(metrics);
+    }
+
+    private static JSONArray toJSON(List<TestDurationHistory.DurationStat> stats) {
+        JSONArray array = new JSONArray();
+        for (var stat : stats) {
+            array.put(new JSONObject()
+                    .put("id", stat.id())
+                    .put("latest", stat.latest())
+                    .put("baseline", stat.baseline())
+                    .put("samples", stat.samples()));
+        }
+        return array;
+    }
+
+    private static String getEnv(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+
     /**
      * Main entry point to launch the CI server
      * @param args ignored
@@ -157,8 +1121,10 @@ public class CIServer extends AbstractHandler {
      */
     public static void main(String[] args) throws Exception {
         Server server = new Server(8027);
-        server.setHandler(new CIServer());
+        CIServer ciServer = new CIServer();
+        server.setHandler(ciServer);
         server.start();
+        ciServer.replayJournal();
         server.join();
     }
 
@@ -0,0 +1,160 @@
+package build_management;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * This class decides whether a new build may enter the build path. Each repository has its own token bucket and the
+ * number of builds admitted but not finished yet is capped globally, so that a burst of pushes or a misbehaving
+ * integration gets rejected early instead of slowing down every build in flight.
+ * <p>
+ * The repository URL comes from the unauthenticated webhook payload, so the buckets that refilled completely are
+ * dropped regularly: a full bucket behaves like the new bucket created on the next request of its repository.
+ * </p>
+ */
+public class AdmissionController {
+
+    /**
+     * Outcome of an admission request
+     */
+    public enum Status {
+        /** The build may run, release() must be called once it is over */
+        ADMITTED,
+        /** The repository exceeded its rate limit */
+        RATE_LIMITED,
+        /** Too many builds are pending on the server */
+        SATURATED
+    }
+
+    /**
+     * Decision returned by admit()
+     *
+     * @param status            whether the build was admitted, and why not if it was not
+     * @param retryAfterSeconds the delay after which the client should try again, 0 if admitted
+     */
+    public record Decision(Status status, long retryAfterSeconds) {
+    }
+
+    // Number of admission requests between two removals of the full buckets
+    static final int SWEEP_INTERVAL = 256;
+
+    private final int burst;
+    private final double buildsPerSecond;
+    private final int maxPending;
+    private final long saturatedRetryAfterSeconds;
+    private final LongSupplier clock;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger requestsSinceSweep = new AtomicInteger();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder saturated = new LongAdder();
+
+    /**
+     * Class constructor
+     *
+     * @param burst                      the number of builds a repository may trigger at once
+     * @param buildsPerMinute            the sustained number of builds per minute allowed per repository
+     * @param maxPending                 the maximum number of admitted builds not finished yet
+     * @param saturatedRetryAfterSeconds the Retry-After delay suggested when the server is saturated
+     * @param clock                      the source of nanosecond timestamps, System::nanoTime outside of tests
+     */
+    public AdmissionController(int burst, double buildsPerMinute, int maxPending, long saturatedRetryAfterSeconds,
+                               LongSupplier clock) {
+        this.burst = burst;
+        this.buildsPerSecond = buildsPerMinute / 60;
+        this.maxPending = maxPending;
+        this.saturatedRetryAfterSeconds = saturatedRetryAfterSeconds;
+        this.clock = clock;
+    }
+
+    /**
+     * Requests the admission of a build of the given repository
+     *
+     * @param repo the repository URL
+     * @return the decision, a repository token is only consumed if the server is not saturated
+     */
+    public Decision admit(String repo) {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            saturated.increment();
+            return new Decision(Status.SATURATED, saturatedRetryAfterSeconds);
+        }
+        if (requestsSinceSweep.incrementAndGet() >= SWEEP_INTERVAL) {
+            requestsSinceSweep.set(0);
+            // Removing a bucket is atomic with the acquisitions below, no token is taken from a dropped bucket
+            buckets.keySet().forEach(key -> buckets.computeIfPresent(key,
+                    (r, bucket) -> bucket.isFull() ? null : bucket));
+        }
+        long[] waitNanos = {0};
+        buckets.compute(repo, (r, bucket) -> {
+            if (bucket == null)
+                bucket = new TokenBucket(burst, buildsPerSecond, clock);
+            waitNanos[0] = bucket.tryAcquire();
+            return bucket;
+        });
+        if (waitNanos[0] > 0) {
+            pending.decrementAndGet();
+            rateLimited.increment();
+            return new Decision(Status.RATE_LIMITED, Math.max(1, (waitNanos[0] + 999_999_999L) / 1_000_000_000L));
+        }
+        admitted.increment();
+        return new Decision(Status.ADMITTED, 0);
+    }
+
+    /**
+     * Signals the end of an admitted build
+     */
+    public void release() {
+        pending.decrementAndGet();
+    }
+
+    /**
+     * Getter for the number of admitted builds not finished yet
+     *
+     * @return the current number of pending builds
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Getter for the number of repositories whose bucket is kept
+     *
+     * @return the number of buckets, at most the number of repositories seen since the last sweep plus those still
+     *         refilling
+     */
+    public int getTrackedRepositories() {
+        return buckets.size();
+    }
+
+    /**
+     * Getter for the total number of admitted builds
+     *
+     * @return the number of ADMITTED decisions since the server started
+     */
+    public long getAdmitted() {
+        return admitted.sum();
+    }
+
+    /**
+     * Getter for the total number of builds rejected by a repository rate limit
+     *
+     * @return the number of RATE_LIMITED decisions since the server started
+     */
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    /**
+     * Getter for the total number of builds rejected because the server was saturated
+     *
+     * @return the number of SATURATED decisions since the server started
+     */
+    public long getSaturated() {
+        return saturated.sum();
+    }
+}
@@ -0,0 +1,125 @@
+package build_management;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class finds the first bad commit of a range whose last commit is known to be bad and whose parent of the
+ * first commit is known to be good, by probing a few commits at a time.
+ * <p>
+ * Each round probes up to {@code parallelism} commits splitting the remaining range evenly, at the same time, so
+ * a range of n commits needs about log(n) / log(parallelism + 1) rounds. Each probe of a round gets its own slot
+ * number, e.g. to run it in its own workspace, and a slot is never used by two probes at the same time.
+ * </p>
+ */
+public class Bisector {
+
+    /**
+     * Checks one commit of the range
+     */
+    @FunctionalInterface
+    public interface Probe {
+        /**
+         * Tells whether a commit is good, called from a worker thread
+         *
+         * @param commit the commit to check
+         * @param slot   the number of the probe in its round, between 0 and parallelism - 1
+         * @return true if the commit is good, false if it is bad
+         * @throws Exception if the commit could not be checked, the bisection is then stopped
+         */
+        boolean isGood(String commit, int slot) throws Exception;
+    }
+
+    /**
+     * Outcome of a bisection
+     *
+     * @param firstBad the first bad commit of the range
+     * @param probes   the number of commits checked
+     * @param rounds   the number of rounds of parallel probes
+     */
+    public record Result(String firstBad, int probes, int rounds) {
+    }
+
+    private final int parallelism;
+
+    /**
+     * Class constructor
+     *
+     * @param parallelism the maximum number of commits probed at the same time
+     */
+    public Bisector(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("At least one probe must run at a time.");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Searches the first bad commit of the range, assuming that every commit after a bad one is bad as well
+     *
+     * @param commits the commits of the range, oldest first, the last one is known to be bad
+     * @param probe   the check of a single commit
+     * @return the first bad commit of the range and the cost of the search
+     * @throws ExecutionException   if a probe failed to check its commit
+     * @throws InterruptedException if the thread is interrupted while waiting for the probes
+     */
+    public Result bisect(List<String> commits, Probe probe) throws ExecutionException, InterruptedException {
+        if (commits.isEmpty())
+            throw new IllegalArgumentException("The range holds no commit.");
+        // Indexes of the last commit known to be good (-1 is the parent of the range) and the first known to be bad
+        int good = -1;
+        int bad = commits.size() - 1;
+        int probes = 0;
+        int rounds = 0;
+
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(parallelism, commits.size()), runnable -> {
+            Thread thread = new Thread(runnable, "bisect-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            while (bad - good > 1) {
+                List<Integer> points = new ArrayList<>(splitPoints(good, bad));
+                List<Future<Boolean>> verdicts = new ArrayList<>();
+                for (int slot = 0; slot < points.size(); slot++) {
+                    String commit = commits.get(points.get(slot));
+                    int probeSlot = slot;
+                    verdicts.add(workers.submit(() -> probe.isGood(commit, probeSlot)));
+                }
+                int newBad = bad;
+                for (int i = 0; i < points.size(); i++) {
+                    if (!verdicts.get(i).get())
+                        newBad = Math.min(newBad, points.get(i));
+                }
+                for (int i = 0; i < points.size(); i++) {
+                    if (points.get(i) < newBad && verdicts.get(i).get())
+                        good = Math.max(good, points.get(i));
+                }
+                bad = newBad;
+                probes += points.size();
+                rounds++;
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return new Result(commits.get(bad), probes, rounds);
+    }
+
+    /**
+     * Picks the commits probed in one round, evenly spread strictly between the good and the bad bounds
+     */
+    private TreeSet<Integer> splitPoints(int good, int bad) {
+        TreeSet<Integer> points = new TreeSet<>();
+        int gap = bad - good;
+        for (int k = 1; k <= parallelism; k++) {
+            int point = good + (int) Math.round((double) gap * k / (parallelism + 1));
+            if (point > good && point < bad)
+                points.add(point);
+        }
+        return points;
+    }
+}
@@ -0,0 +1,95 @@
+package build_management;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rolling model of build durations per repository, branch and phase, used to predict how long a build will take
+ * <p>
+ * Each (repository, branch, phase) keeps an exponentially weighted moving average of its durations over the past
+ * builds of the branch, a build skipping the phase counting as 0, so recent builds weigh more than old ones and the
+ * model follows the evolution of a project. A branch without history uses
+ * the average of its repository's other branches, and a repository without history uses a default duration.
+ * </p>
+ */
+public class BuildDurationModel {
+
+    private final double weight;
+    private final long defaultMillis;
+    private final Map<String, Map<String, Double>> averages = new HashMap<>();
+
+    /**
+     * Class constructor
+     *
+     * @param weight        the weight of the newest sample in the moving averages, between 0 and 1
+     * @param defaultMillis the duration predicted for a repository that has never been built
+     */
+    public BuildDurationModel(double weight, long defaultMillis) {
+        if (weight <= 0 || weight > 1)
+            throw new IllegalArgumentException("The weight must be in ]0, 1].");
+        this.weight = weight;
+        this.defaultMillis = defaultMillis;
+    }
+
+    /**
+     * Adds the phase durations of a finished build to the model. A phase the branch ran before but this build did
+     * not, e.g. the rerun of failed tests, counts as 0 so that it fades out of the prediction.
+     *
+     * @param repo        the repository URL
+     * @param branch      the branch name
+     * @param phaseMillis the total duration of each phase of the build, e.g. "clone", "compile" or "test"
+     */
+    public synchronized void record(String repo, String branch, Map<String, Long> phaseMillis) {
+        Map<String, Double> phases = averages.get(key(repo, branch));
+        if (phases == null) {
+            Map<String, Double> first = new HashMap<>();
+            phaseMillis.forEach((phase, millis) -> first.put(phase, (double) millis));
+            averages.put(key(repo, branch), first);
+            return;
+        }
+        phases.replaceAll((phase, average) -> (1 - weight) * average);
+        phaseMillis.forEach((phase, millis) -> phases.merge(phase, weight * millis, Double::sum));
+        // A phase that has not run for a long time does not need to be tracked anymore
+        phases.values().removeIf(average -> average < 1);
+    }
+
+    /**
+     * Predicts the duration of a build, i.e. the sum of the predicted durations of its phases
+     *
+     * @param repo   the repository URL
+     * @param branch the branch name
+     * @return the predicted duration in milliseconds
+     */
+    public synchronized long predict(String repo, String branch) {
+        Map<String, Double> phases = averages.get(key(repo, branch));
+        if (phases != null)
+            return Math.round(phases.values().stream().mapToDouble(Double::doubleValue).sum());
+
+        // Mean of the other branches of the repository
+        String prefix = repo + "@";
+        double sum = 0;
+        int branches = 0;
+        for (var entry : averages.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                sum += entry.getValue().values().stream().mapToDouble(Double::doubleValue).sum();
+                branches++;
+            }
+        }
+        return branches > 0 ? Math.round(sum / branches) : defaultMillis;
+    }
+
+    /**
+     * Tells whether a branch has been built before, i.e. whether its prediction is based on its own history
+     *
+     * @param repo   the repository URL
+     * @param branch the branch name
+     * @return true if a duration has been recorded for this repository and branch
+     */
+    public synchronized boolean hasHistory(String repo, String branch) {
+        return averages.containsKey(key(repo, branch));
+    }
+
+    private static String key(String repo, String branch) {
+        return repo + "@" + branch;
+    }
+}
@@ -0,0 +1,317 @@
+package build_management;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This class stores the console output of builds in a block-compressed format so that a range of lines or the end
+ * of a log can be read back without decompressing the whole log.
+ * <p>
+ * A log is split at line boundaries into chunks of about CHUNK_SIZE bytes that are deflated independently and
+ * appended to a "buildId.log.z" file. A "buildId.idx" file holds one fixed size entry per chunk giving its position
+ * in the compressed file, its position in the original log and the number of the first line it contains.
+ * </p>
+ * <p>
+ * The archive is bounded: once the stored logs take more than the given number of bytes, the least recently written
+ * ones are deleted.
+ * </p>
+ */
+public class BuildLogArchive {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+    private static final Pattern BUILD_ID_PATTERN = Pattern.compile("[A-Za-z0-9._-]+");
+
+    /**
+     * Index entry describing one compressed chunk
+     *
+     * @param compressedOffset   position of the chunk in the .log.z file
+     * @param compressedLength   size of the chunk in the .log.z file
+     * @param uncompressedOffset position of the first byte of the chunk in the original log
+     * @param uncompressedLength size of the chunk once decompressed
+     * @param firstLine          number of the first line of the chunk (starting at 1)
+     * @param lineCount          number of lines in the chunk
+     */
+    private record Chunk(long compressedOffset, int compressedLength, long uncompressedOffset,
+                         int uncompressedLength, long firstLine, int lineCount) {
+        static final int BYTES = 8 + 4 + 8 + 4 + 8 + 4;
+    }
+
+    private final Path root;
+    private final long maxBytes;
+
+    /**
+     * Class constructor creates the folder the logs are stored in if needed, the logs are never deleted
+     *
+     * @param root the folder holding the archived logs
+     * @throws UncheckedIOException if the folder cannot be created
+     */
+    public BuildLogArchive(Path root) {
+        this(root, Long.MAX_VALUE);
+    }
+
+    /**
+     * Class constructor creates the folder the logs are stored in if needed
+     *
+     * @param root     the folder holding the archived logs
+     * @param maxBytes the size on disk of the stored logs, indexes included, above which the oldest ones are deleted
+     * @throws UncheckedIOException if the folder cannot be created
+     */
+    public BuildLogArchive(Path root, long maxBytes) {
+        this.maxBytes = maxBytes;
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create the build log folder", e);
+        }
+        this.root = root;
+    }
+
+    /**
+     * Compresses and stores the given log, replacing any log previously stored under the same id
+     *
+     * @param buildId the identifier of the build, made of letters, digits, '.', '_' and '-'
+     * @param log     the full console output of the build
+     * @throws IOException              if the log cannot be written
+     * @throws IllegalArgumentException if the build id contains other characters
+     */
+    public synchronized void write(String buildId, String log) throws IOException {
+        Path data = dataFile(buildId);
+        Path index = indexFile(buildId);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (OutputStream dataOut = new BufferedOutputStream(Files.newOutputStream(data));
+             DataOutputStream indexOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(index)))) {
+            long compressedOffset = 0;
+            long uncompressedOffset = 0;
+            long nextLine = 1;
+            StringBuilder chunk = new StringBuilder();
+            int chunkLines = 0;
+
+            int start = 0;
+            while (start < log.length()) {
+                int end = log.indexOf('\n', start);
+                end = end < 0 ? log.length() : end;
+                chunk.append(log, start, end).append('\n');
+                chunkLines++;
+                start = end + 1;
+
+                if (chunk.length() >= CHUNK_SIZE || start >= log.length()) {
+                    byte[] raw = chunk.toString().getBytes(StandardCharsets.UTF_8);
+                    byte[] compressed = deflate(deflater, raw);
+                    dataOut.write(compressed);
+
+                    indexOut.writeLong(compressedOffset);
+                    indexOut.writeInt(compressed.length);
+                    indexOut.writeLong(uncompressedOffset);
+                    indexOut.writeInt(raw.length);
+                    indexOut.writeLong(nextLine);
+                    indexOut.writeInt(chunkLines);
+
+                    compressedOffset += compressed.length;
+                    uncompressedOffset += raw.length;
+                    nextLine += chunkLines;
+                    chunk.setLength(0);
+                    chunkLines = 0;
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        prune(buildId);
+    }
+
+    /**
+     * Deletes the least recently written logs until the archive fits in its size limit, the given log is kept
+     *
+     * @param keptId the identifier of the log just written
+     * @throws IOException if the archive folder cannot be listed
+     */
+    private void prune(String keptId) throws IOException {
+        if (maxBytes == Long.MAX_VALUE)
+            return;
+        record StoredLog(String id, long bytes, long modified) {
+        }
+        List<StoredLog> logs = new ArrayList<>();
+        long total = 0;
+        try (var files = Files.list(root)) {
+            for (Path data : files.filter(file -> file.getFileName().toString().endsWith(".log.z")).toList()) {
+                String id = data.getFileName().toString().replaceFirst("\\.log\\.z$", "");
+                try {
+                    long bytes = Files.size(data) + Files.size(indexFile(id));
+                    logs.add(new StoredLog(id, bytes, Files.getLastModifiedTime(data).toMillis()));
+                    total += bytes;
+                } catch (IOException | IllegalArgumentException e) {
+                    // Not a complete log of this archive
+                }
+            }
+        }
+        logs.sort(Comparator.comparingLong(StoredLog::modified));
+        for (StoredLog stored : logs) {
+            if (total <= maxBytes)
+                break;
+            if (stored.id().equals(keptId))
+                continue;
+            Files.deleteIfExists(dataFile(stored.id()));
+            Files.deleteIfExists(indexFile(stored.id()));
+            total -= stored.bytes();
+        }
+    }
+
+    /**
+     * Tells whether a log has been stored under the given id
+     *
+     * @param buildId the identifier of the build
+     * @return true if both the data and the index files exist
+     */
+    public boolean exists(String buildId) {
+        return BUILD_ID_PATTERN.matcher(buildId).matches()
+                && Files.exists(dataFile(buildId)) && Files.exists(indexFile(buildId));
+    }
+
+    /**
+     * Counts the lines of a stored log using only its index
+     *
+     * @param buildId the identifier of the build
+     * @return the number of lines of the log
+     * @throws IOException if the index cannot be read
+     */
+    public long lineCount(String buildId) throws IOException {
+        List<Chunk> chunks = readIndex(buildId);
+        if (chunks.isEmpty())
+            return 0;
+        Chunk last = chunks.get(chunks.size() - 1);
+        return last.firstLine() + last.lineCount() - 1;
+    }
+
+    /**
+     * Reads a range of lines of a stored log, only the chunks containing them are decompressed
+     *
+     * @param buildId  the identifier of the build
+     * @param fromLine the first line to return, starting at 1
+     * @param toLine   the last line to return (inclusive)
+     * @return the requested lines, each followed by a line feed
+     * @throws IOException if the log cannot be read
+     */
+    public String readLines(String buildId, long fromLine, long toLine) throws IOException {
+        StringBuilder result = new StringBuilder();
+        try (RandomAccessFile data = new RandomAccessFile(dataFile(buildId).toFile(), "r")) {
+            for (Chunk chunk : readIndex(buildId)) {
+                long lastLine = chunk.firstLine() + chunk.lineCount() - 1;
+                if (lastLine < fromLine || chunk.firstLine() > toLine)
+                    continue;
+                String[] lines = new String(inflate(data, chunk), StandardCharsets.UTF_8).split("\n", -1);
+                for (int i = 0; i < chunk.lineCount(); i++) {
+                    long lineNumber = chunk.firstLine() + i;
+                    if (lineNumber >= fromLine && lineNumber <= toLine)
+                        result.append(lines[i]).append('\n');
+                }
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Reads the end of a stored log, only the last chunks are decompressed
+     *
+     * @param buildId  the identifier of the build
+     * @param maxBytes the maximum number of bytes of the original log to return
+     * @return the last complete lines of the log that fit in maxBytes
+     * @throws IOException if the log cannot be read
+     */
+    public String tail(String buildId, long maxBytes) throws IOException {
+        List<Chunk> chunks = readIndex(buildId);
+        if (chunks.isEmpty())
+            return "";
+        Chunk last = chunks.get(chunks.size() - 1);
+        long start = Math.max(0, last.uncompressedOffset() + last.uncompressedLength() - maxBytes);
+        // One extra byte is read to know whether the tail starts at the beginning of a line
+        long begin = Math.max(0, start - 1);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (RandomAccessFile data = new RandomAccessFile(dataFile(buildId).toFile(), "r")) {
+            for (Chunk chunk : chunks) {
+                if (chunk.uncompressedOffset() + chunk.uncompressedLength() <= begin)
+                    continue;
+                byte[] raw = inflate(data, chunk);
+                int skip = (int) Math.max(0, begin - chunk.uncompressedOffset());
+                bytes.write(raw, skip, raw.length - skip);
+            }
+        }
+        byte[] tail = bytes.toByteArray();
+        int from = 0;
+        if (start > 0) {
+            // Drop the extra byte and the partial line that may follow it
+            while (from < tail.length && tail[from] != '\n')
+                from++;
+            from = Math.min(from + 1, tail.length);
+        }
+        return new String(tail, from, tail.length - from, StandardCharsets.UTF_8);
+    }
+
+    private List<Chunk> readIndex(String buildId) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(indexFile(buildId))))) {
+            long entries = Files.size(indexFile(buildId)) / Chunk.BYTES;
+            for (long i = 0; i < entries; i++) {
+                chunks.add(new Chunk(in.readLong(), in.readInt(), in.readLong(), in.readInt(),
+                        in.readLong(), in.readInt()));
+            }
+        }
+        return chunks;
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            int length = deflater.deflate(buffer);
+            out.write(buffer, 0, length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(RandomAccessFile data, Chunk chunk) throws IOException {
+        byte[] compressed = new byte[chunk.compressedLength()];
+        data.seek(chunk.compressedOffset());
+        data.readFully(compressed);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[chunk.uncompressedLength()];
+            int read = 0;
+            while (read < raw.length && !inflater.finished())
+                read += inflater.inflate(raw, read, raw.length - read);
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted build log chunk", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private Path dataFile(String buildId) {
+        return root.resolve(checkId(buildId) + ".log.z");
+    }
+
+    private Path indexFile(String buildId) {
+        return root.resolve(checkId(buildId) + ".idx");
+    }
+
+    private static String checkId(String buildId) {
+        if (!BUILD_ID_PATTERN.matcher(buildId).matches())
+            throw new IllegalArgumentException("Invalid build id: " + buildId);
+        return buildId;
+    }
+}
@@ -0,0 +1,16 @@
+package build_management;
+
+import code_verification.ResourceUsage;
+
+import java.util.List;
+
+/**
+ * Outcome of a build, as sent in its notification
+ *
+ * @param subject       the subject of the notification
+ * @param message       the body of the notification
+ * @param success       true if the code compiled and every test passed
+ * @param resourceUsage the resources used by each maven invocation of the build
+ */
+public record BuildResult(String subject, String message, boolean success, List<ResourceUsage> resourceUsage) {
+}
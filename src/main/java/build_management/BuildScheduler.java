@@ -0,0 +1,219 @@
+package build_management;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
+
+/**
+ * This class runs the queued builds on a bounded number of worker threads, shortest expected build first.
+ * <p>
+ * Picking the shortest build first minimises the mean waiting time when short and long builds are mixed. To keep
+ * long builds from starving, a build that has waited longer than the aging bound is picked before any build that
+ * has not, in arrival order.
+ * </p>
+ *
+ * @param <V> the type of the build results
+ */
+public class BuildScheduler<V> {
+
+    /**
+     * Prediction of when a queued or running build will start and finish
+     *
+     * @param running        true if the build is running
+     * @param position       the number of queued builds that will start before this one, 0 if it is running
+     * @param expectedMillis the predicted duration of the build
+     * @param startInMillis  the predicted delay before the build starts, 0 if it is running
+     * @param finishInMillis the predicted delay before the build finishes
+     */
+    public record Estimate(boolean running, int position, long expectedMillis, long startInMillis,
+                           long finishInMillis) {
+    }
+
+    private static class Job<V> {
+        final String id;
+        final long expectedMillis;
+        final long enqueuedAt;
+        final Callable<V> task;
+        final CompletableFuture<V> result = new CompletableFuture<>();
+        long startedAt;
+
+        Job(String id, long expectedMillis, long enqueuedAt, Callable<V> task) {
+            this.id = id;
+            this.expectedMillis = expectedMillis;
+            this.enqueuedAt = enqueuedAt;
+            this.task = task;
+        }
+    }
+
+    private final long agingBoundMillis;
+    private final LongSupplier clockMillis;
+    private final ExecutorService workers;
+    private final List<Job<V>> queue = new ArrayList<>();
+    private final Map<String, Job<V>> running = new LinkedHashMap<>();
+    private int concurrency;
+
+    /**
+     * Class constructor
+     *
+     * @param concurrency      the maximum number of builds running at the same time
+     * @param agingBoundMillis the waiting time after which a build is picked before the shorter ones
+     * @param clockMillis      the source of millisecond timestamps, System::currentTimeMillis outside of tests
+     */
+    public BuildScheduler(int concurrency, long agingBoundMillis, LongSupplier clockMillis) {
+        if (concurrency < 1)
+            throw new IllegalArgumentException("At least one build must be allowed to run.");
+        this.concurrency = concurrency;
+        this.agingBoundMillis = agingBoundMillis;
+        this.clockMillis = clockMillis;
+        this.workers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "build-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a build
+     *
+     * @param id             the identifier of the build, used to query its estimate
+     * @param expectedMillis the predicted duration of the build
+     * @param task           the build itself
+     * @return the future completed with the result of the build
+     */
+    public CompletableFuture<V> submit(String id, long expectedMillis, Callable<V> task) {
+        Job<V> job = new Job<>(id, expectedMillis, clockMillis.getAsLong(), task);
+        synchronized (this) {
+            queue.add(job);
+        }
+        dispatch();
+        return job.result;
+    }
+
+    /**
+     * Predicts when a build will start and finish, by replaying the scheduling policy over the queued builds with
+     * the predicted durations of the queued and running builds
+     *
+     * @param id the identifier given to submit()
+     * @return the estimate, or an empty Optional if the build is not queued nor running
+     */
+    public synchronized Optional<Estimate> estimate(String id) {
+        long now = clockMillis.getAsLong();
+        Job<V> runningJob = running.get(id);
+        if (runningJob != null) {
+            long remaining = Math.max(0, runningJob.expectedMillis - (now - runningJob.startedAt));
+            return Optional.of(new Estimate(true, 0, runningJob.expectedMillis, 0, remaining));
+        }
+
+        // Time at which each worker slot becomes free
+        long[] freeAt = new long[Math.max(concurrency, running.size())];
+        int slot = 0;
+        for (Job<V> job : running.values())
+            freeAt[slot++] = Math.max(0, job.expectedMillis - (now - job.startedAt));
+
+        List<Job<V>> order = new ArrayList<>(queue);
+        order.sort(dispatchOrder(now));
+        for (int position = 0; position < order.size(); position++) {
+            Arrays.sort(freeAt);
+            // Slots above the concurrency limit are only draining the builds started before a limit decrease
+            int earliest = freeAt.length - concurrency;
+            Job<V> job = order.get(position);
+            long start = freeAt[earliest];
+            freeAt[earliest] = start + job.expectedMillis;
+            if (job.id.equals(id))
+                return Optional.of(new Estimate(false, position, job.expectedMillis, start,
+                        start + job.expectedMillis));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Getter for the number of builds waiting to start
+     *
+     * @return the length of the queue
+     */
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Getter for the number of builds running
+     *
+     * @return the number of builds started and not finished yet
+     */
+    public synchronized int getRunning() {
+        return running.size();
+    }
+
+    /**
+     * Getter for the maximum number of builds running at the same time
+     *
+     * @return the current concurrency limit
+     */
+    public synchronized int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Changes the maximum number of builds running at the same time. Queued builds start at once if the limit
+     * increased, running builds are never stopped if it decreased.
+     *
+     * @param concurrency the new concurrency limit
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1)
+            throw new IllegalArgumentException("At least one build must be allowed to run.");
+        synchronized (this) {
+            this.concurrency = concurrency;
+        }
+        dispatch();
+    }
+
+    private Comparator<Job<V>> dispatchOrder(long now) {
+        Comparator<Job<V>> agedFirst = Comparator.comparing(job -> now - job.enqueuedAt < agingBoundMillis);
+        return agedFirst.thenComparing((a, b) -> {
+            boolean aged = now - a.enqueuedAt >= agingBoundMillis;
+            return aged ? Long.compare(a.enqueuedAt, b.enqueuedAt) : Long.compare(a.expectedMillis, b.expectedMillis);
+        }).thenComparingLong(job -> job.enqueuedAt);
+    }
+
+    /**
+     * Starts queued builds while fewer than the concurrency limit are running
+     */
+    private void dispatch() {
+        List<Job<V>> toStart = new ArrayList<>();
+        synchronized (this) {
+            long now = clockMillis.getAsLong();
+            while (running.size() < concurrency && !queue.isEmpty()) {
+                Job<V> next = queue.stream().min(dispatchOrder(now)).orElseThrow();
+                queue.remove(next);
+                next.startedAt = now;
+                running.put(next.id, next);
+                toStart.add(next);
+            }
+        }
+        for (Job<V> job : toStart)
+            workers.execute(() -> run(job));
+    }
+
+    private void run(Job<V> job) {
+        try {
+            job.result.complete(job.task.call());
+        } catch (Exception e) {
+            job.result.completeExceptionally(e);
+        } finally {
+            synchronized (this) {
+                running.remove(job.id);
+            }
+            dispatch();
+        }
+    }
+}
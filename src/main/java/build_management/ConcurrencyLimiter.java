@@ -0,0 +1,185 @@
+package build_management;
+
+import com.sun.management.OperatingSystemMXBean;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * This class adapts the number of builds allowed to run at the same time to the load of the host, the way TCP adapts
+ * its congestion window (additive increase, multiplicative decrease).
+ * <p>
+ * The host is congested when its load average per core or its available memory cross their thresholds, or when the
+ * builds take noticeably longer than predicted from their previous runs. The limit is then cut by a fixed factor,
+ * at most once per cooldown since the load average reacts slowly to a change of limit. Otherwise, the limit grows by
+ * one build when builds are waiting and every allowed build is running, so an idle server does not inflate its limit
+ * without ever testing it. The limit always stays between the configured bounds.
+ * </p>
+ */
+public class ConcurrencyLimiter {
+
+    /**
+     * Snapshot of the load of the host
+     *
+     * @param loadPerCore          the system load average over the last minute divided by the number of cores, or a
+     *                             negative value if the platform does not provide it
+     * @param availableMemoryRatio the fraction of the physical memory available to new processes, between 0 and 1
+     */
+    public record HostLoad(double loadPerCore, double availableMemoryRatio) {
+
+        /**
+         * Samples the load of the machine the server runs on. On Linux the available memory is MemAvailable, which
+         * counts the page cache that can be reclaimed, elsewhere it is the free memory reported by the JVM.
+         *
+         * @return the current load of the host
+         */
+        public static HostLoad sample() {
+            var os = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+            double load = os.getSystemLoadAverage();
+            double loadPerCore = load < 0 ? -1 : load / os.getAvailableProcessors();
+            long total = os.getTotalMemorySize();
+            long available = readMemAvailable();
+            if (available < 0)
+                available = os.getFreeMemorySize();
+            return new HostLoad(loadPerCore, total > 0 ? (double) available / total : 1);
+        }
+
+        private static long readMemAvailable() {
+            try {
+                for (String line : Files.readAllLines(Path.of("/proc/meminfo"))) {
+                    if (line.startsWith("MemAvailable:"))
+                        return Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+                }
+            } catch (IOException | NumberFormatException e) {
+                // Not on Linux
+            }
+            return -1;
+        }
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double maxLoadPerCore;
+    private final double minAvailableMemoryRatio;
+    private final double maxLatencyInflation;
+    private final double decreaseFactor;
+    private final long cooldownMillis;
+    private final Supplier<HostLoad> hostLoad;
+    private final LongSupplier clockMillis;
+    private int limit;
+    private double latencyInflation = 1;
+    private HostLoad lastLoad = new HostLoad(-1, 1);
+    private long lastDecreaseAt;
+    private long increases;
+    private long decreases;
+
+    /**
+     * Class constructor
+     *
+     * @param initialLimit            the limit used until the first adjustment
+     * @param minLimit                the lowest limit, at least 1
+     * @param maxLimit                the highest limit
+     * @param maxLoadPerCore          the load average per core above which the host is congested
+     * @param minAvailableMemoryRatio the fraction of available memory under which the host is congested
+     * @param maxLatencyInflation     the ratio between the measured and predicted build durations above which the
+     *                                host is congested
+     * @param decreaseFactor          the factor applied to the limit on congestion, between 0 and 1
+     * @param cooldownMillis          the minimum delay between two decreases
+     * @param hostLoad                the source of host load samples, HostLoad::sample outside of tests
+     * @param clockMillis             the source of millisecond timestamps, System::currentTimeMillis outside of tests
+     * @throws IllegalArgumentException if the bounds are inconsistent
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double maxLoadPerCore,
+                              double minAvailableMemoryRatio, double maxLatencyInflation, double decreaseFactor,
+                              long cooldownMillis, Supplier<HostLoad> hostLoad, LongSupplier clockMillis) {
+        if (minLimit < 1 || maxLimit < minLimit)
+            throw new IllegalArgumentException("The limits must satisfy 1 <= min <= max.");
+        if (decreaseFactor <= 0 || decreaseFactor >= 1)
+            throw new IllegalArgumentException("The decrease factor must be in ]0, 1[.");
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxLoadPerCore = maxLoadPerCore;
+        this.minAvailableMemoryRatio = minAvailableMemoryRatio;
+        this.maxLatencyInflation = maxLatencyInflation;
+        this.decreaseFactor = decreaseFactor;
+        this.cooldownMillis = cooldownMillis;
+        this.hostLoad = hostLoad;
+        this.clockMillis = clockMillis;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.lastDecreaseAt = clockMillis.getAsLong() - cooldownMillis;
+    }
+
+    /**
+     * Adds the duration of a finished build to the measured latency inflation, an exponentially weighted moving
+     * average of the ratio between measured and predicted durations. Builds without a prediction based on their own
+     * history should not be recorded.
+     *
+     * @param predictedMillis the duration predicted when the build was queued
+     * @param measuredMillis  the duration of the build
+     */
+    public synchronized void recordLatency(long predictedMillis, long measuredMillis) {
+        if (predictedMillis <= 0)
+            return;
+        latencyInflation = 0.7 * latencyInflation + 0.3 * ((double) measuredMillis / predictedMillis);
+    }
+
+    /**
+     * Samples the load of the host and adjusts the limit
+     *
+     * @param queued  the number of builds waiting to start
+     * @param running the number of builds running
+     * @return the new limit
+     */
+    public synchronized int adjust(int queued, int running) {
+        long now = clockMillis.getAsLong();
+        lastLoad = hostLoad.get();
+        boolean congested = lastLoad.loadPerCore() > maxLoadPerCore
+                || lastLoad.availableMemoryRatio() < minAvailableMemoryRatio
+                || latencyInflation > maxLatencyInflation;
+        if (congested) {
+            if (limit > minLimit && now - lastDecreaseAt >= cooldownMillis) {
+                limit = Math.max(minLimit, Math.min(limit - 1, (int) Math.floor(limit * decreaseFactor)));
+                lastDecreaseAt = now;
+                decreases++;
+                // The inflation measured so far was caused by the previous limit, the new one starts afresh
+                latencyInflation = 1;
+            }
+        } else if (queued > 0 && running >= limit && limit < maxLimit) {
+            limit++;
+            increases++;
+        }
+        return limit;
+    }
+
+    /**
+     * Getter for the current limit
+     *
+     * @return the number of builds allowed to run at the same time
+     */
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Appends the state of the limiter in the Prometheus text format
+     *
+     * @param metrics the builder the metrics are appended to
+     */
+    public synchronized void appendPrometheus(StringBuilder metrics) {
+        metrics.append("# TYPE ci_build_concurrency_limit gauge\n")
+                .append("ci_build_concurrency_limit ").append(limit).append('\n');
+        metrics.append("# TYPE ci_host_load_per_core gauge\n")
+                .append("ci_host_load_per_core ").append(lastLoad.loadPerCore()).append('\n');
+        metrics.append("# TYPE ci_host_memory_available_ratio gauge\n")
+                .append("ci_host_memory_available_ratio ").append(lastLoad.availableMemoryRatio()).append('\n');
+        metrics.append("# TYPE ci_build_latency_inflation gauge\n")
+                .append("ci_build_latency_inflation ").append(latencyInflation).append('\n');
+        metrics.append("# TYPE ci_concurrency_adjustments_total counter\n")
+                .append("ci_concurrency_adjustments_total{direction=\"increase\"} ").append(increases).append('\n')
+                .append("ci_concurrency_adjustments_total{direction=\"decrease\"} ").append(decreases).append('\n');
+    }
+}
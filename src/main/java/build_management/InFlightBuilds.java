@@ -0,0 +1,77 @@
+package build_management;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * This class deduplicates concurrent builds of the same key ("single-flight"): the first caller runs the build,
+ * the callers arriving while it is running get the same result instead of starting the build again.
+ *
+ * @param <K> the type of the keys identifying a build, e.g. repository and commit hash
+ * @param <V> the type of the build results
+ */
+public class InFlightBuilds<K, V> {
+
+    /**
+     * Result of a call to runAsync()
+     *
+     * @param result the pending or completed result of the build
+     * @param leader true if this caller ran the build, false if it attached to a build already in flight
+     * @param <V>    the type of the build results
+     */
+    public record Flight<V>(CompletableFuture<V> result, boolean leader) {
+    }
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Starts the build unless a build with the same key is already in flight, without waiting for its result.
+     * The key stays in flight until the future returned by the build completes.
+     *
+     * @param key   the key identifying the build
+     * @param build starts the build, e.g. by queuing it, if no build with the same key is in flight
+     * @return the Flight, whose result completes when the build finishes
+     */
+    public Flight<V> runAsync(K key, Supplier<CompletableFuture<V>> build) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null)
+            return new Flight<>(existing, false);
+
+        CompletableFuture<V> started;
+        try {
+            started = build.get();
+        } catch (RuntimeException e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete((result, error) -> {
+            inFlight.remove(key, created);
+            if (error != null)
+                created.completeExceptionally(error);
+            else
+                created.complete(result);
+        });
+        return new Flight<>(created, true);
+    }
+
+    /**
+     * Tells whether a build with the given key is running
+     *
+     * @param key the key identifying the build
+     * @return true if a build started by runAsync() with this key has not completed yet
+     */
+    public boolean isInFlight(K key) {
+        return inFlight.containsKey(key);
+    }
+
+    /**
+     * Counts the builds currently running
+     *
+     * @return the number of distinct keys in flight
+     */
+    public int size() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,350 @@
+package build_management;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-ahead journal of the build jobs accepted by the server, used to build again after a restart the jobs that
+ * were accepted but never finished.
+ * <p>
+ * Every state transition is appended as one JSON line. Appends are handed to a single writer thread that writes
+ * every record queued at that time and syncs the file once for the whole batch, the callers return once their
+ * record is on disk. When enough records have been appended since the last compaction, the journal is rewritten
+ * with only the unfinished jobs, so its size and the time needed to read it at startup follow the number of
+ * unfinished jobs rather than the history of the server.
+ * </p>
+ * <p>
+ * Each start of a job is counted. A job that was started maxAttempts times without finishing, e.g. because it
+ * crashes the server, is recorded as failed when the journal is opened instead of being run once more.
+ * </p>
+ */
+public class JobJournal implements AutoCloseable {
+
+    /**
+     * Job found unfinished in the journal
+     *
+     * @param id       the identifier returned by accepted()
+     * @param payload  the payload given to accepted()
+     * @param state    the last state recorded for the job, "ACCEPTED" or "RUNNING"
+     * @param attempts the number of times the job was started
+     */
+    public record PendingJob(String id, String payload, String state, int attempts) {
+    }
+
+    private record Entry(String line, CompletableFuture<Void> durable) {
+    }
+
+    /** Number of starts after which an unfinished job is given up, unless another one is given */
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    private final Path file;
+    private final int compactionThreshold;
+    private final Map<String, PendingJob> unfinished = new LinkedHashMap<>();
+    private final List<PendingJob> recovered;
+    private final List<PendingJob> abandoned = new ArrayList<>();
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private FileChannel channel;
+    private int recordsSinceCompaction;
+    private volatile boolean open = true;
+
+    /**
+     * Class constructor reads the existing journal, if any, and starts the writer thread, a job is started at most
+     * DEFAULT_MAX_ATTEMPTS times
+     *
+     * @param folder              the folder holding the journal file
+     * @param compactionThreshold the number of records appended after which the journal is compacted
+     * @throws IOException if the journal cannot be read or opened
+     */
+    public JobJournal(Path folder, int compactionThreshold) throws IOException {
+        this(folder, compactionThreshold, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    /**
+     * Class constructor reads the existing journal, if any, and starts the writer thread
+     *
+     * @param folder              the folder holding the journal file
+     * @param compactionThreshold the number of records appended after which the journal is compacted
+     * @param maxAttempts         the number of starts after which an unfinished job is given up
+     * @throws IOException if the journal cannot be read or opened
+     */
+    public JobJournal(Path folder, int compactionThreshold, int maxAttempts) throws IOException {
+        Files.createDirectories(folder);
+        this.file = folder.resolve("jobs.journal");
+        this.compactionThreshold = compactionThreshold;
+
+        this.recordsSinceCompaction = replay();
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        // A record torn by a crash is left on its own line, where the next replay ignores it
+        if (channel.size() > 0 && lastByte() != '\n')
+            channel.write(ByteBuffer.wrap(new byte[]{'\n'}));
+
+        StringBuilder failed = new StringBuilder();
+        for (PendingJob job : List.copyOf(unfinished.values())) {
+            if (job.attempts() >= maxAttempts) {
+                unfinished.remove(job.id());
+                abandoned.add(job);
+                failed.append(new JSONObject().put("op", "FAILED").put("id", job.id())).append('\n');
+                recordsSinceCompaction++;
+            }
+        }
+        if (!failed.isEmpty()) {
+            ByteBuffer buffer = ByteBuffer.wrap(failed.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(false);
+        }
+        this.recovered = List.copyOf(unfinished.values());
+        if (recordsSinceCompaction >= compactionThreshold)
+            compact();
+
+        this.writer = new Thread(this::writeLoop, "job-journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Returns the jobs that were unfinished when the journal was opened, in the order they were accepted
+     *
+     * @return the jobs to run again after a restart
+     */
+    public List<PendingJob> getRecoveredJobs() {
+        return recovered;
+    }
+
+    /**
+     * Returns the jobs given up when the journal was opened because they had been started too many times
+     *
+     * @return the jobs recorded as failed instead of being recovered
+     */
+    public List<PendingJob> getAbandonedJobs() {
+        return List.copyOf(abandoned);
+    }
+
+    /**
+     * Records a newly accepted job and waits until the record is on disk
+     *
+     * @param payload the data needed to run the job again, e.g. the fields of a webhook payload
+     * @return the identifier of the job, to give to the next state transitions
+     */
+    public String accepted(String payload) {
+        String id = UUID.randomUUID().toString();
+        synchronized (unfinished) {
+            unfinished.put(id, new PendingJob(id, payload, "ACCEPTED", 0));
+        }
+        append(new JSONObject().put("op", "ACCEPTED").put("id", id).put("payload", payload));
+        return id;
+    }
+
+    /**
+     * Records that a job started running and waits until the record is on disk
+     *
+     * @param id the identifier returned by accepted()
+     */
+    public void running(String id) {
+        int attempt;
+        synchronized (unfinished) {
+            PendingJob job = unfinished.get(id);
+            attempt = job == null ? 1 : job.attempts() + 1;
+            if (job != null)
+                unfinished.put(id, new PendingJob(id, job.payload(), "RUNNING", attempt));
+        }
+        append(new JSONObject().put("op", "RUNNING").put("id", id).put("attempt", attempt));
+    }
+
+    /**
+     * Records that a job is over, it will not be run again after a restart, and waits until the record is on disk
+     *
+     * @param id      the identifier returned by accepted()
+     * @param success false if the job ended with an error
+     */
+    public void finished(String id, boolean success) {
+        synchronized (unfinished) {
+            unfinished.remove(id);
+        }
+        append(new JSONObject().put("op", success ? "DONE" : "FAILED").put("id", id));
+    }
+
+    /**
+     * Counts the jobs accepted and not finished yet
+     *
+     * @return the number of unfinished jobs
+     */
+    public int getUnfinishedCount() {
+        synchronized (unfinished) {
+            return unfinished.size();
+        }
+    }
+
+    private void append(JSONObject record) {
+        if (!open)
+            throw new IllegalStateException("The journal is closed.");
+        Entry entry = new Entry(record + "\n", new CompletableFuture<>());
+        queue.add(entry);
+        try {
+            entry.durable().join();
+        } catch (CompletionException e) {
+            throw new UncheckedIOException("Failed to write the job journal",
+                    e.getCause() instanceof IOException io ? io : new IOException(e.getCause()));
+        }
+    }
+
+    private void writeLoop() {
+        while (open || !queue.isEmpty()) {
+            List<Entry> batch = new ArrayList<>();
+            try {
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch);
+
+            StringBuilder lines = new StringBuilder();
+            batch.forEach(entry -> lines.append(entry.line()));
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+                channel.force(false);
+                batch.forEach(entry -> entry.durable().complete(null));
+
+                recordsSinceCompaction += batch.size();
+                if (recordsSinceCompaction >= compactionThreshold)
+                    compact();
+            } catch (IOException e) {
+                batch.forEach(entry -> entry.durable().completeExceptionally(e));
+            }
+        }
+    }
+
+    /**
+     * Rewrites the journal with one record per unfinished job, the new file replaces the old one atomically
+     */
+    private void compact() throws IOException {
+        List<PendingJob> snapshot;
+        synchronized (unfinished) {
+            snapshot = List.copyOf(unfinished.values());
+        }
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            StringBuilder lines = new StringBuilder();
+            for (PendingJob job : snapshot) {
+                lines.append(new JSONObject().put("op", "ACCEPTED").put("id", job.id()).put("payload", job.payload()))
+                        .append('\n');
+                if (job.state().equals("RUNNING"))
+                    lines.append(new JSONObject().put("op", "RUNNING").put("id", job.id())
+                            .put("attempt", job.attempts())).append('\n');
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining())
+                out.write(buffer);
+            out.force(true);
+        }
+        channel.close();
+        try {
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncFolder();
+        } catch (IOException e) {
+            Files.deleteIfExists(compacted);
+            throw e;
+        } finally {
+            // Whether the old or the compacted journal is in place, the next appends go to it
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        recordsSinceCompaction = 0;
+    }
+
+    /**
+     * Makes the rename of the compacted journal durable, the platforms that cannot sync a folder are skipped
+     */
+    private void syncFolder() {
+        try (FileChannel folder = FileChannel.open(file.getParent(), StandardOpenOption.READ)) {
+            folder.force(true);
+        } catch (IOException e) {
+            // Folders cannot be opened on this platform, the rename is left to the filesystem
+        }
+    }
+
+    /**
+     * Streams the journal file and rebuilds the set of unfinished jobs, lines that cannot be parsed are skipped
+     *
+     * @return the number of records read
+     */
+    private int replay() throws IOException {
+        if (!Files.exists(file))
+            return 0;
+        int records = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank())
+                    continue;
+                try {
+                    JSONObject record = new JSONObject(line);
+                    String id = record.getString("id");
+                    switch (record.getString("op")) {
+                        case "ACCEPTED" -> unfinished.put(id, new PendingJob(id, record.getString("payload"),
+                                "ACCEPTED", 0));
+                        case "RUNNING" -> unfinished.computeIfPresent(id, (key, job) -> new PendingJob(id,
+                                job.payload(), "RUNNING", record.optInt("attempt", job.attempts() + 1)));
+                        default -> unfinished.remove(id);
+                    }
+                    records++;
+                } catch (JSONException e) {
+                    System.err.println("Skipping corrupted job journal record: " + line);
+                }
+            }
+        }
+        return records;
+    }
+
+    private byte lastByte() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            in.read(buffer, in.size() - 1);
+        }
+        return buffer.get(0);
+    }
+
+    /**
+     * Writes the records still queued and closes the journal file
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        open = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,13 @@
+package build_management;
+
+/**
+ * Outcome of the build of one entry of a JDK matrix
+ *
+ * @param label      the name of the entry, e.g. "17"
+ * @param success    true if the project compiled and its tests passed with this JDK
+ * @param summary    a one line description of the outcome, listing the failing tests if any
+ * @param wallMillis the duration of the build of the entry
+ * @param logId      the identifier of the archived console output of the entry
+ */
+public record MatrixEntryResult(String label, boolean success, String summary, long wallMillis, String logId) {
+}
@@ -0,0 +1,110 @@
+package build_management;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class holds the per repository rules telling which paths cannot change the outcome of a build, e.g. the
+ * documentation, so that a commit changing only such paths can reuse the verdict of its parent.
+ * <p>
+ * The rules are globs evaluated in order, the last matching rule wins. A glob ignores the paths it matches, a glob
+ * starting with '!' takes back paths ignored by an earlier one. A glob without '/' matches the file name in any
+ * folder, like in a .gitignore. The rules given for "*" apply to every repository, before its own rules.
+ * </p>
+ */
+public class PathFilter {
+
+    private record Rule(PathMatcher matcher, boolean matchesName, boolean ignore) {
+
+        boolean matches(Path path) {
+            Path target = matchesName ? path.getFileName() : path;
+            return target != null && matcher.matches(target);
+        }
+    }
+
+    private final Map<String, List<Rule>> rules = new LinkedHashMap<>();
+
+    /**
+     * Class constructor parses the rules
+     *
+     * @param spec the rules of each repository, as "repoURL=glob,glob" entries separated by ';', the repository
+     *             "*" standing for all of them, e.g. "*=*.md,docs/**;https://github.com/org/repo=site/**,!pom.xml"
+     * @throws IllegalArgumentException if an entry has no repository or a glob is invalid
+     */
+    public PathFilter(String spec) {
+        for (String entry : spec.split(";")) {
+            if (entry.isBlank())
+                continue;
+            String[] repoAndGlobs = entry.split("=", 2);
+            if (repoAndGlobs.length != 2)
+                throw new IllegalArgumentException("Invalid path rules, expected repoURL=glob,glob: " + entry);
+            List<Rule> repoRules = rules.computeIfAbsent(repoAndGlobs[0].trim(), repo -> new ArrayList<>());
+            for (String glob : repoAndGlobs[1].split(",")) {
+                glob = glob.trim();
+                boolean ignore = !glob.startsWith("!");
+                if (!ignore)
+                    glob = glob.substring(1);
+                if (glob.isEmpty())
+                    continue;
+                repoRules.add(new Rule(FileSystems.getDefault().getPathMatcher("glob:" + glob),
+                        !glob.contains("/"), ignore));
+            }
+        }
+    }
+
+    /**
+     * Tells whether some paths of the given repository are ignored
+     *
+     * @param repo the repository URL
+     * @return true if at least one rule applies to the repository
+     */
+    public boolean hasRules(String repo) {
+        return !rulesOf(repo).isEmpty();
+    }
+
+    /**
+     * Tells whether a path of the given repository is ignored
+     *
+     * @param repo the repository URL
+     * @param path the path of a file relative to the root of the repository, with '/' separators
+     * @return true if the last rule matching the path ignores it
+     */
+    public boolean isIgnored(String repo, String path) {
+        return isIgnored(rulesOf(repo), Path.of(path));
+    }
+
+    /**
+     * Tells whether a change touches only ignored paths
+     *
+     * @param repo  the repository URL
+     * @param paths the paths changed, relative to the root of the repository
+     * @return true if the repository has rules and every path is ignored, an empty change only counts if the
+     *         repository has rules
+     */
+    public boolean onlyIgnored(String repo, Collection<String> paths) {
+        List<Rule> repoRules = rulesOf(repo);
+        return !repoRules.isEmpty() && paths.stream().allMatch(path -> isIgnored(repoRules, Path.of(path)));
+    }
+
+    private List<Rule> rulesOf(String repo) {
+        List<Rule> repoRules = new ArrayList<>(rules.getOrDefault("*", List.of()));
+        if (!repo.equals("*"))
+            repoRules.addAll(rules.getOrDefault(repo, List.of()));
+        return repoRules;
+    }
+
+    private static boolean isIgnored(List<Rule> repoRules, Path path) {
+        boolean ignored = false;
+        for (Rule rule : repoRules) {
+            if (rule.matches(path))
+                ignored = rule.ignore();
+        }
+        return ignored;
+    }
+}
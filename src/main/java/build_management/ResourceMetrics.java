@@ -0,0 +1,86 @@
+package build_management;
+
+import code_verification.ResourceUsage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * This class aggregates the resources used by the builds per repository and verification phase and exports them
+ * in the Prometheus text exposition format
+ */
+public class ResourceMetrics {
+
+    private record Key(String repo, String phase) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key other) {
+            int byRepo = repo.compareTo(other.repo);
+            return byRepo != 0 ? byRepo : phase.compareTo(other.phase);
+        }
+    }
+
+    private static class Totals {
+        long runs;
+        long cpuMillis;
+        long wallMillis;
+        long readBytes;
+        long writeBytes;
+        long lastPeakRssKb;
+        long maxPeakRssKb;
+        int maxPeakThreads;
+    }
+
+    private final Map<Key, Totals> totals = new TreeMap<>();
+
+    /**
+     * Adds the resources used by one build
+     *
+     * @param repo  the repository URL
+     * @param usage the usage of each maven invocation of the build
+     */
+    public synchronized void record(String repo, List<ResourceUsage> usage) {
+        for (ResourceUsage phase : usage) {
+            Totals phaseTotals = totals.computeIfAbsent(new Key(repo, phase.phase()), key -> new Totals());
+            phaseTotals.runs++;
+            phaseTotals.cpuMillis += phase.cpuMillis();
+            phaseTotals.wallMillis += phase.wallMillis();
+            phaseTotals.readBytes += phase.readBytes();
+            phaseTotals.writeBytes += phase.writeBytes();
+            phaseTotals.lastPeakRssKb = phase.peakRssKb();
+            phaseTotals.maxPeakRssKb = Math.max(phaseTotals.maxPeakRssKb, phase.peakRssKb());
+            phaseTotals.maxPeakThreads = Math.max(phaseTotals.maxPeakThreads, phase.peakThreads());
+        }
+    }
+
+    /**
+     * Appends the aggregated metrics to the given builder
+     *
+     * @param out the builder receiving the metrics in the Prometheus text exposition format
+     */
+    public synchronized void appendPrometheus(StringBuilder out) {
+        appendMetric(out, "ci_build_phase_runs_total", "counter", totals -> totals.runs);
+        appendMetric(out, "ci_build_cpu_seconds_total", "counter", totals -> totals.cpuMillis / 1000.0);
+        appendMetric(out, "ci_build_wall_seconds_total", "counter", totals -> totals.wallMillis / 1000.0);
+        appendMetric(out, "ci_build_read_bytes_total", "counter", totals -> totals.readBytes);
+        appendMetric(out, "ci_build_write_bytes_total", "counter", totals -> totals.writeBytes);
+        appendMetric(out, "ci_build_last_peak_rss_bytes", "gauge", totals -> totals.lastPeakRssKb * 1024);
+        appendMetric(out, "ci_build_max_peak_rss_bytes", "gauge", totals -> totals.maxPeakRssKb * 1024);
+        appendMetric(out, "ci_build_max_peak_threads", "gauge", totals -> totals.maxPeakThreads);
+    }
+
+    private void appendMetric(StringBuilder out, String name, String type,
+                              Function<Totals, Number> value) {
+        if (totals.isEmpty())
+            return;
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        totals.forEach((key, phaseTotals) -> out.append(name)
+                .append("{repo=\"").append(escape(key.repo())).append("\",phase=\"").append(escape(key.phase()))
+                .append("\"} ").append(value.apply(phaseTotals)).append('\n'));
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,39 @@
+package build_management;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of reentrant locks shared by an unbounded set of keys: a key always maps to the same lock, two keys may
+ * share one. This bounds the memory used to guard resources such as build workspaces without ever removing locks.
+ */
+public class StripedLocks {
+
+    private final Lock[] stripes;
+
+    /**
+     * Class constructor
+     *
+     * @param stripes the number of locks, a higher number lowers the chance that two keys contend
+     */
+    public StripedLocks(int stripes) {
+        if (stripes < 1)
+            throw new IllegalArgumentException("At least one stripe is needed.");
+        this.stripes = new Lock[stripes];
+        for (int i = 0; i < stripes; i++)
+            this.stripes[i] = new ReentrantLock();
+    }
+
+    /**
+     * Returns the lock guarding the given key
+     *
+     * @param key the key of the guarded resource
+     * @return the same lock for equal keys
+     */
+    public Lock get(Object key) {
+        int hash = key.hashCode();
+        // Spread the high bits so that keys differing only there do not always share a stripe
+        hash ^= hash >>> 16;
+        return stripes[Math.floorMod(hash, stripes.length)];
+    }
+}
@@ -0,0 +1,58 @@
+package build_management;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket rate limiter: the bucket holds at most {@code capacity} tokens and is refilled continuously at a
+ * fixed rate, each admitted request takes one token
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final LongSupplier clock;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Class constructor, the bucket starts full
+     *
+     * @param capacity        the maximum number of tokens, i.e. the largest burst admitted at once
+     * @param tokensPerSecond the refill rate
+     * @param clock           the source of nanosecond timestamps, System::nanoTime outside of tests
+     */
+    public TokenBucket(int capacity, double tokensPerSecond, LongSupplier clock) {
+        if (capacity < 1 || tokensPerSecond <= 0)
+            throw new IllegalArgumentException("The capacity and the refill rate must be positive.");
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1e9;
+        this.clock = clock;
+        this.tokens = capacity;
+        this.lastRefill = clock.getAsLong();
+    }
+
+    /**
+     * Takes one token if one is available
+     *
+     * @return 0 if a token was taken, otherwise the number of nanoseconds until the next token is available
+     */
+    public synchronized long tryAcquire() {
+        long now = clock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    /**
+     * Tells whether the bucket has refilled completely, it then behaves exactly like a new bucket
+     *
+     * @return true if the bucket holds its capacity
+     */
+    public synchronized boolean isFull() {
+        return tokens + (clock.getAsLong() - lastRefill) * tokensPerNano >= capacity;
+    }
+}
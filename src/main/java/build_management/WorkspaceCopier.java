@@ -0,0 +1,88 @@
+package build_management;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.LinkOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * This class duplicates a checked out workspace so that several builds of the same commit can run side by side,
+ * e.g. one per JDK.
+ * <p>
+ * The files are hard linked to the original ones where the filesystem allows it, which costs neither time nor
+ * space whatever the size of the checkout, and copied otherwise. Maven only reads the sources and writes its
+ * outputs to new files in the target folders, so the linked files are never modified. The git metadata and the
+ * target folders are not duplicated.
+ * </p>
+ */
+public class WorkspaceCopier {
+
+    private WorkspaceCopier() {
+    }
+
+    /**
+     * Duplicates a workspace
+     *
+     * @param source the workspace to duplicate
+     * @param target the folder to create, it must not exist
+     * @return the number of files that had to be copied because they could not be linked
+     * @throws IOException if the workspace cannot be duplicated
+     */
+    public static int copy(Path source, Path target) throws IOException {
+        int[] copied = {0};
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(source) && isExcluded(dir))
+                    return FileVisitResult.SKIP_SUBTREE;
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path copy = target.resolve(source.relativize(file).toString());
+                if (attrs.isSymbolicLink()) {
+                    Files.copy(file, copy, StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+                    return FileVisitResult.CONTINUE;
+                }
+                try {
+                    Files.createLink(copy, file);
+                } catch (IOException | UnsupportedOperationException e) {
+                    // Another filesystem or no hard link support
+                    Files.copy(file, copy, StandardCopyOption.COPY_ATTRIBUTES);
+                    copied[0]++;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return copied[0];
+    }
+
+    /**
+     * Deletes a workspace created by copy(), the original files are left untouched
+     *
+     * @param workspace the folder to delete
+     * @throws IOException if a file cannot be deleted
+     */
+    public static void delete(Path workspace) throws IOException {
+        if (!Files.exists(workspace))
+            return;
+        try (Stream<Path> files = Files.walk(workspace)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList())
+                Files.delete(file);
+        }
+    }
+
+    // The build outputs of a maven module are the target folder next to its pom.xml
+    private static boolean isExcluded(Path dir) {
+        String name = dir.getFileName().toString();
+        return name.equals(".git") || (name.equals("target") && Files.exists(dir.resolveSibling("pom.xml")));
+    }
+}
@@ -0,0 +1,256 @@
+package build_management;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * This class chooses the folder a build workspace is created in. Workspaces go to a memory-backed filesystem such
+ * as /dev/shm while the workspaces already there and the estimated size of the new one fit the memory budget, and
+ * to the disk folder otherwise.
+ * <p>
+ * The size of a workspace is estimated from the size measured at the end of the previous build of the same
+ * repository, compilation outputs and test reports included, or from a default size for a repository never built.
+ * The copies of a build workspace made for the JDK matrix entries, see reserveCopy(), go to the tier of the build
+ * workspace so that their files can be hard linked to it, and reserve the size of the files they do not share with
+ * it, i.e. their build outputs, measured the same way. The bisection probes are full clones and are always created
+ * below getDiskRoot().
+ * </p>
+ */
+public class WorkspacePolicy {
+
+    /**
+     * Storage a workspace is created on
+     */
+    public enum Tier {
+        /** Memory-backed filesystem, the workspace must be deleted at the end of the build to free the memory */
+        MEMORY,
+        /** Disk folder */
+        DISK
+    }
+
+    /**
+     * Workspace location returned by reserve()
+     *
+     * @param repo          the repository URL the workspace is reserved for
+     * @param root          the folder to create the workspace in
+     * @param tier          the storage of the folder
+     * @param reservedBytes the part of the memory budget reserved for the workspace, 0 on disk
+     */
+    public record Placement(String repo, Path root, Tier tier, long reservedBytes) {
+    }
+
+    private final Path memoryRoot;
+    private final Path diskRoot;
+    private final long memoryBudgetBytes;
+    private final long defaultSizeBytes;
+    private final Map<String, Long> lastSizes = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastCopySizes = new ConcurrentHashMap<>();
+    private final LongAdder memoryPlacements = new LongAdder();
+    private final LongAdder diskPlacements = new LongAdder();
+    private long memoryReservedBytes;
+
+    /**
+     * Class constructor
+     *
+     * @param memoryRoot        the folder on the memory-backed filesystem, null to always use the disk
+     * @param diskRoot          the folder on disk
+     * @param memoryBudgetBytes the maximum total size of the workspaces held in memory
+     * @param defaultSizeBytes  the size assumed for the workspace of a repository never built
+     */
+    public WorkspacePolicy(Path memoryRoot, Path diskRoot, long memoryBudgetBytes, long defaultSizeBytes) {
+        this.memoryRoot = memoryRoot;
+        this.diskRoot = diskRoot;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.defaultSizeBytes = defaultSizeBytes;
+    }
+
+    /**
+     * Chooses the folder of a new workspace and reserves its estimated size in the memory budget if it goes to
+     * memory. release() must be called once the workspace is deleted or left to the disk.
+     *
+     * @param repo the repository URL
+     * @return the placement of the workspace
+     */
+    public Placement reserve(String repo) {
+        long estimate = lastSizes.getOrDefault(repo, defaultSizeBytes);
+        synchronized (this) {
+            if (memoryRoot != null && memoryReservedBytes + estimate <= memoryBudgetBytes && hasRoom(estimate)) {
+                memoryReservedBytes += estimate;
+                memoryPlacements.increment();
+                return new Placement(repo, memoryRoot, Tier.MEMORY, estimate);
+            }
+        }
+        diskPlacements.increment();
+        return new Placement(repo, diskRoot, Tier.DISK, 0);
+    }
+
+    /**
+     * Chooses the folder of a copy of a build workspace. The copy goes next to the build workspace, on the same
+     * filesystem, if it is on disk or if the files the copy does not share with it still fit the memory budget, and
+     * to the disk folder otherwise, where its files cannot be linked. releaseCopy() must be called once the copy is
+     * deleted.
+     *
+     * @param checkout the placement of the build workspace the copy is made from
+     * @return the placement of the copy
+     */
+    public Placement reserveCopy(Placement checkout) {
+        if (checkout.tier() == Tier.MEMORY) {
+            // Linked files cost nothing, a copy never measured is assumed to add nothing either
+            long estimate = lastCopySizes.getOrDefault(checkout.repo(), 0L);
+            synchronized (this) {
+                if (memoryReservedBytes + estimate <= memoryBudgetBytes && hasRoom(estimate)) {
+                    memoryReservedBytes += estimate;
+                    memoryPlacements.increment();
+                    return new Placement(checkout.repo(), checkout.root(), Tier.MEMORY, estimate);
+                }
+            }
+        }
+        diskPlacements.increment();
+        return new Placement(checkout.repo(), diskRoot, Tier.DISK, 0);
+    }
+
+    /**
+     * Gives back the memory reserved for a copy of a build workspace and keeps its size for the next estimates
+     *
+     * @param placement     the placement returned by reserveCopy()
+     * @param measuredBytes the size of the files of the copy not shared with the build workspace, see
+     *                      unsharedSizeOf(), negative if it is unknown
+     */
+    public void releaseCopy(Placement placement, long measuredBytes) {
+        if (measuredBytes >= 0)
+            lastCopySizes.put(placement.repo(), measuredBytes);
+        synchronized (this) {
+            memoryReservedBytes -= placement.reservedBytes();
+        }
+    }
+
+    /**
+     * Gives back the memory reserved for a workspace and keeps its size for the next estimates
+     *
+     * @param placement     the placement returned by reserve()
+     * @param measuredBytes the size of the workspace at the end of the build, negative if it is unknown
+     */
+    public void release(Placement placement, long measuredBytes) {
+        if (measuredBytes >= 0)
+            lastSizes.put(placement.repo(), measuredBytes);
+        synchronized (this) {
+            memoryReservedBytes -= placement.reservedBytes();
+        }
+    }
+
+    /**
+     * Getter for the disk folder
+     *
+     * @return the folder the disk workspaces and the derived workspaces are created in
+     */
+    public Path getDiskRoot() {
+        return diskRoot;
+    }
+
+    /**
+     * Getter for the part of the memory budget currently reserved
+     *
+     * @return the sum of the estimated sizes of the workspaces held in memory
+     */
+    public synchronized long getMemoryReservedBytes() {
+        return memoryReservedBytes;
+    }
+
+    /**
+     * Counts the workspaces placed on each tier since the server started
+     *
+     * @param tier the storage
+     * @return the number of calls to reserve() that returned this tier
+     */
+    public long getPlacements(Tier tier) {
+        return (tier == Tier.MEMORY ? memoryPlacements : diskPlacements).sum();
+    }
+
+    /**
+     * Appends the placement counters and the memory usage to the given builder
+     *
+     * @param out the builder receiving the metrics in the Prometheus text exposition format
+     */
+    public void appendPrometheus(StringBuilder out) {
+        out.append("# TYPE ci_workspaces_total counter\n");
+        for (Tier tier : Tier.values())
+            out.append("ci_workspaces_total{tier=\"").append(tier.name().toLowerCase()).append("\"} ")
+                    .append(getPlacements(tier)).append('\n');
+        out.append("# TYPE ci_workspace_memory_reserved_bytes gauge\n")
+                .append("ci_workspace_memory_reserved_bytes ").append(getMemoryReservedBytes()).append('\n');
+        out.append("# TYPE ci_workspace_memory_budget_bytes gauge\n")
+                .append("ci_workspace_memory_budget_bytes ").append(memoryRoot == null ? 0 : memoryBudgetBytes)
+                .append('\n');
+    }
+
+    /**
+     * Measures the size of a workspace
+     *
+     * @param workspace the folder of the workspace
+     * @return the total size of the regular files below the folder
+     * @throws UncheckedIOException if the folder cannot be walked
+     */
+    public static long sizeOf(Path workspace) {
+        try (Stream<Path> files = Files.walk(workspace)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> {
+                try {
+                    return Files.size(file);
+                } catch (IOException e) {
+                    return 0;
+                }
+            }).sum();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to measure the workspace " + workspace, e);
+        }
+    }
+
+    /**
+     * Measures the files of a workspace that are not hard linked to another file, e.g. the build outputs of a copy
+     * made by WorkspaceCopier
+     *
+     * @param workspace the folder of the workspace
+     * @return the total size of the regular files below the folder having a single link, or of all of them if the
+     *         filesystem does not count the links
+     * @throws UncheckedIOException if the folder cannot be walked
+     */
+    public static long unsharedSizeOf(Path workspace) {
+        try (Stream<Path> files = Files.walk(workspace)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> {
+                try {
+                    if (linkCount(file) > 1)
+                        return 0;
+                    return Files.size(file);
+                } catch (IOException e) {
+                    return 0;
+                }
+            }).sum();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to measure the workspace " + workspace, e);
+        }
+    }
+
+    private static int linkCount(Path file) throws IOException {
+        try {
+            return Files.getAttribute(file, "unix:nlink") instanceof Integer links ? links : 1;
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            // The filesystem does not count the links
+            return 1;
+        }
+    }
+
+    // Other processes may use the memory-backed filesystem as well, the budget alone is not enough
+    private boolean hasRoom(long estimate) {
+        try {
+            Files.createDirectories(memoryRoot);
+            return Files.getFileStore(memoryRoot).getUsableSpace() >= estimate;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
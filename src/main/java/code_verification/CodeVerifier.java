@@ -1,6 +1,8 @@
 package code_verification;
 
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
@@ -9,10 +11,18 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -23,10 +33,21 @@ import java.util.regex.Pattern;
 public class CodeVerifier {
 
     private final File projectFolder;
+    private final MavenExecutor mavenExecutor;
+    private final List<PhaseTiming> phaseTimings = new ArrayList<>();
+    private final List<ResourceUsage> resourceUsage = new ArrayList<>();
     private boolean isCompiled;
     private String compilationOutput;
     private boolean isTested;
     private List<Document> testXml;
+    private Map<String, List<Document>> testXmlByModule;
+    private final List<String> modules;
+    private String moduleThreads;
+    private String testOutput;
+    private Set<Path> reportPaths;
+    private String rerunOutput = "";
+    private FailFastMonitor failFastMonitor;
+    private MavenRunPermits runPermits;
 
     /**
      * The CodeVerifier constructor makes sure the given project folder path points to a valid maven projects
@@ -37,6 +58,20 @@ public class CodeVerifier {
      * @throws IllegalArgumentException if the path points to a folder that contains no pom.xml file
      */
     public CodeVerifier(String projectFolderPath) {
+        this(projectFolderPath, new ForkedMavenExecutor());
+    }
+
+    /**
+     * The CodeVerifier constructor makes sure the given project folder path points to a valid maven projects
+     *
+     * @param projectFolderPath the absolute path to the folder containing the project (a String)
+     * @param mavenExecutor     the executor used to launch maven, a ForkedMavenExecutor is used as a fallback if it
+     *                          fails to start
+     * @throws IllegalArgumentException if the path points to no existing resource
+     * @throws IllegalArgumentException if the path points to a file instead of a folder
+     * @throws IllegalArgumentException if the path points to a folder that contains no pom.xml file
+     */
+    public CodeVerifier(String projectFolderPath, MavenExecutor mavenExecutor) {
         var folder = new File(projectFolderPath);
 
         if (!folder.exists())
@@ -51,6 +86,8 @@ public class CodeVerifier {
             throw new IllegalArgumentException("No pom.xml file found.");
 
         this.projectFolder = folder;
+        this.mavenExecutor = mavenExecutor;
+        this.modules = readModules(folder, "");
         this.isCompiled = false;
         this.isTested = false;
     }
@@ -67,22 +104,8 @@ public class CodeVerifier {
     public boolean verifyCompilation() throws IOException, InterruptedException {
         if (isCompiled)
             throw new IllegalStateException("The code has already been compiled.");
-        ProcessBuilder builder = new ProcessBuilder();
-        builder.command("sh", "-c", "mvn compile");
-        builder.directory(projectFolder);
-        Process process = builder.start();
-
         StringBuilder result = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream())
-        )) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                result.append(line).append("\n");
-            }
-        }
-
-        int exitCode = process.waitFor();
+        int exitCode = runMaven("compile", reactorOptions() + "compile", result, process -> {}, line -> {});
         result.append("Exit Code: ").append(exitCode).append("\n");
 
         this.compilationOutput = result.toString();
@@ -90,10 +113,51 @@ public class CodeVerifier {
         return exitCode == 0;
     }
 
+    /**
+     * Enables the parallel build of the modules of a multi-module project, the setting has no effect on a project
+     * without modules
+     *
+     * @param threads the value given to the maven -T option, e.g. "4" or "1C" for one thread per core,
+     *                null to build the modules one after the other
+     */
+    public void setModuleThreads(String threads) {
+        this.moduleThreads = threads;
+    }
+
+    /**
+     * Makes every maven process of this verifier wait for a permit of the given pool before it starts, so that the
+     * verifiers sharing the pool do not run more maven processes at the same time than its limit
+     *
+     * @param permits the pool shared with the other verifiers, null to start maven right away
+     */
+    public void setRunPermits(MavenRunPermits permits) {
+        this.runPermits = permits;
+    }
+
+    /**
+     * Returns the modules of the reactor, as declared in the modules section of the pom.xml files
+     *
+     * @return the relative paths of the modules (nested modules included), empty for a single-module project
+     */
+    public List<String> getModules() {
+        return modules;
+    }
+
+    /**
+     * Enables the fail-fast mode of the next call to runTests(): the console output and the surefire report directory
+     * are watched while the tests are running and the monitor's listener is notified of the first failure
+     *
+     * @param monitor the monitor to use while the tests are running
+     */
+    public void setFailFastMonitor(FailFastMonitor monitor) {
+        this.failFastMonitor = monitor;
+    }
+
     /**
      * Tries to run all the tests in the folder previously given to the constructor
      * This method relies on the maven library surefire to run JUnit tests
      * This method is intended to be run only once since the result of the tests should be deterministic
+     * If a fail-fast monitor has been set, it is fed with the output while the tests are running
      *
      * @return true if every test succeeded, false otherwise
      * @throws IOException           if the standard output of the process gets interrupted
@@ -101,37 +165,305 @@ public class CodeVerifier {
      * @throws IllegalStateException if the method is called a second time on the same project
      */
     public boolean runTests() throws IOException, InterruptedException {
+        return runTests(null);
+    }
+
+    /**
+     * Tries to run the given tests in the folder previously given to the constructor, compiling the project first
+     * if needed, e.g. to check whether an older commit already fails the tests failing on a newer one
+     * This method is intended to be run only once, like runTests()
+     *
+     * @param testIds the identifiers of the tests to run, of the form "className#name", or null to run every test
+     * @return true if the compilation succeeded and the selected tests that exist in the project succeeded
+     * @throws IOException           if the standard output of the process gets interrupted
+     * @throws InterruptedException  if the subprocess compiling the source gets interrupted before completion
+     * @throws IllegalStateException if the method is called a second time on the same project
+     */
+    public boolean runTests(Set<String> testIds) throws IOException, InterruptedException {
         if (isTested)
             throw new IllegalStateException("The tests have already been run.");
-        ProcessBuilder builder = new ProcessBuilder();
-        builder.command("sh", "-c", "mvn test");
-        builder.directory(projectFolder);
-        Process process = builder.start();
-
+        String goals = reactorOptions() + "test";
+        if (testIds != null)
+            goals += " " + testSelection(testIds);
         Pattern reportPathPattern = Pattern.compile("Surefire report directory: (.+)");
-        String reportPath = null;
-
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream())
-        )) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                Matcher matcher = reportPathPattern.matcher(line);
-                if (matcher.find()) {
-                    reportPath = matcher.group(1);
-                    break;
-                }
+        // A multi-module build announces one report directory per module
+        Set<Path> reportPaths = new LinkedHashSet<>();
+        StringBuilder result = new StringBuilder();
+
+        int exitCode;
+        try {
+            exitCode = runMaven("test", goals, result,
+                    process -> {
+                        if (failFastMonitor != null)
+                            failFastMonitor.attach(process);
+                    },
+                    line -> {
+                        Matcher matcher = reportPathPattern.matcher(line);
+                        if (matcher.find() && reportPaths.add(Paths.get(matcher.group(1)).normalize())
+                                && failFastMonitor != null)
+                            failFastMonitor.watchReports(matcher.group(1));
+                        if (failFastMonitor != null)
+                            failFastMonitor.onLine(line);
+                    });
+        } finally {
+            if (failFastMonitor != null)
+                failFastMonitor.close();
+        }
+        result.append("Exit Code: ").append(exitCode).append("\n");
+        this.testOutput = result.toString();
+
+        // Recent surefire versions no longer announce their report directory, the default one of each module is
+        // used as well. No report directory exists when the test sources fail to compile
+        for (String module : modules) {
+            Path defaultPath = projectFolder.toPath().resolve(module).resolve("target/surefire-reports").normalize();
+            if (Files.isDirectory(defaultPath))
+                reportPaths.add(defaultPath);
+        }
+        this.testXmlByModule = new LinkedHashMap<>();
+        for (Path reportPath : reportPaths) {
+            testXmlByModule.computeIfAbsent(moduleOf(reportPath), module -> new ArrayList<>())
+                    .addAll(loadXmlFromFolder(reportPath.toString()));
+        }
+        this.testXml = testXmlByModule.values().stream().flatMap(List::stream).toList();
+        this.reportPaths = reportPaths;
+        this.isTested = true;
+        return exitCode == 0;
+    }
+
+    /**
+     * Runs again, in the same workspace and without compiling again, the test methods that failed during
+     * runTests(), to tell flaky tests from tests that really fail
+     * Each failing test is rerun until it passes or maxAttempts reruns have been made, the tests still failing are
+     * rerun together in a single maven invocation per attempt
+     *
+     * @param maxAttempts the maximum number of reruns of each failing test
+     * @return one TestRerun per failing test, in the order of the reports, empty if no test failed
+     * @throws IOException           if the standard output of the process gets interrupted
+     * @throws InterruptedException  if the subprocess running the tests gets interrupted before completion
+     * @throws IllegalStateException if the tests have not been run yet
+     */
+    public List<TestRerun> rerunFailedTests(int maxAttempts) throws IOException, InterruptedException {
+        if (!isTested)
+            throw new IllegalStateException("No test has been run yet.");
+        Set<String> remaining = new LinkedHashSet<>();
+        TestCaseResult.fromReports(testXml).stream()
+                .filter(TestCaseResult::failed)
+                .forEach(result -> remaining.add(result.id()));
+        Map<String, Integer> attempts = new LinkedHashMap<>();
+        remaining.forEach(id -> attempts.put(id, 0));
+        Set<String> passed = new LinkedHashSet<>();
+
+        StringBuilder output = new StringBuilder();
+        for (int attempt = 1; attempt <= maxAttempts && !remaining.isEmpty(); attempt++) {
+            // surefire:test runs the classes already compiled without going through the rest of the lifecycle
+            String goals = reactorOptions() + "surefire:test " + testSelection(remaining);
+            int exitCode = runMaven("rerun", goals, output, process -> {}, line -> {});
+            output.append("Exit Code: ").append(exitCode).append("\n");
+
+            List<Document> reports = new ArrayList<>();
+            for (Path reportPath : reportPaths)
+                if (Files.isDirectory(reportPath))
+                    reports.addAll(loadXmlFromFolder(reportPath.toString()));
+            // A test missing from the reports was not run, it counts as failing
+            Set<String> passing = new LinkedHashSet<>();
+            TestCaseResult.fromReports(reports).stream()
+                    .filter(result -> !result.failed())
+                    .forEach(result -> passing.add(result.id()));
+            for (String id : remaining)
+                attempts.merge(id, 1, Integer::sum);
+            remaining.removeIf(id -> passing.contains(id) && passed.add(id));
+        }
+        this.rerunOutput = output.toString();
+
+        List<TestRerun> reruns = new ArrayList<>();
+        attempts.forEach((id, count) -> reruns.add(new TestRerun(id, count, passed.contains(id))));
+        return reruns;
+    }
+
+    /**
+     * Builds the maven options restricting surefire to the given test methods, the modules without any of them
+     * do not fail the build
+     *
+     * @param testIds the identifiers of the tests, of the form "className#name"
+     * @return the options, with a filter of the form "Class#method1+method2,OtherClass#method" that older surefire
+     * versions understand as well
+     */
+    private static String testSelection(Set<String> testIds) {
+        Map<String, List<String>> methodsByClass = new LinkedHashMap<>();
+        for (String id : testIds) {
+            int separator = id.lastIndexOf('#');
+            // Parameterized test names such as "test[0]" are matched by their method name
+            String method = id.substring(separator + 1).replaceAll("\\[.*", "*");
+            List<String> methods = methodsByClass.computeIfAbsent(id.substring(0, separator), c -> new ArrayList<>());
+            if (!methods.contains(method))
+                methods.add(method);
+        }
+        List<String> filters = new ArrayList<>();
+        methodsByClass.forEach((className, methods) -> filters.add(className + "#" + String.join("+", methods)));
+        return "'-Dtest=" + String.join(",", filters) + "'"
+                + " -DfailIfNoTests=false -Dsurefire.failIfNoSpecifiedTests=false";
+    }
+
+    /**
+     * Builds the maven options selecting the reactor parallelism. The modules of a multi-module project are all
+     * built even if one of them fails, except those depending on it, so that every module reports its results.
+     *
+     * @return "-fae " followed by "-T threads " if module threads are set for a multi-module project, an empty
+     *         String for a single module project
+     */
+    private String reactorOptions() {
+        if (modules.isEmpty())
+            return "";
+        return "-fae " + (moduleThreads != null ? "-T " + moduleThreads + " " : "");
+    }
+
+    /**
+     * Finds the module a report directory belongs to
+     *
+     * @param reportPath the path of a surefire report directory
+     * @return the relative path of the deepest module containing the directory, "." for the root project
+     */
+    private String moduleOf(Path reportPath) {
+        String owner = ".";
+        Path ownerPath = projectFolder.toPath().toAbsolutePath().normalize();
+        for (String module : modules) {
+            Path modulePath = projectFolder.toPath().toAbsolutePath().resolve(module).normalize();
+            if (reportPath.toAbsolutePath().startsWith(modulePath) && modulePath.startsWith(ownerPath)) {
+                owner = module;
+                ownerPath = modulePath;
             }
         }
+        return owner;
+    }
 
-        int exitCode = process.waitFor();
+    /**
+     * Reads the modules declared by the pom.xml of the given folder and, recursively, by the pom.xml of its modules
+     * Modules declared inside profiles are ignored since the profiles are not activated by the verifier
+     *
+     * @param folder the folder containing the pom.xml
+     * @param prefix the relative path of the folder from the project root, empty for the root
+     * @return the relative paths of the modules, parents before their own modules
+     */
+    private List<String> readModules(File folder, String prefix) {
+        List<String> result = new ArrayList<>();
+        Document pom;
+        try {
+            pom = parseXml(Files.readString(new File(folder, "pom.xml").toPath()));
+        } catch (IOException e) {
+            return result;
+        }
+        if (pom == null)
+            return result;
 
+        for (Node child = pom.getDocumentElement().getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (!(child instanceof Element modulesElement) || !modulesElement.getTagName().equals("modules"))
+                continue;
+            var moduleNodes = modulesElement.getElementsByTagName("module");
+            for (int i = 0; i < moduleNodes.getLength(); i++) {
+                String module = moduleNodes.item(i).getTextContent().trim();
+                File moduleFolder = new File(folder, module);
+                // A module may also point directly to a pom file
+                if (moduleFolder.isFile())
+                    moduleFolder = moduleFolder.getParentFile();
+                String modulePath = Paths.get(prefix, relativePath(folder, moduleFolder)).normalize()
+                        .toString();
+                result.add(modulePath);
+                result.addAll(readModules(moduleFolder, modulePath));
+            }
+        }
+        return result;
+    }
 
-        this.testXml = loadXmlFromFolder(reportPath);
-        this.isTested = true;
-        return exitCode == 0;
+    private static String relativePath(File parent, File child) {
+        return parent.toPath().toAbsolutePath().normalize().relativize(child.toPath().toAbsolutePath().normalize())
+                .toString();
     }
 
+    /**
+     * Runs maven once a permit is available if a pool of permits is set, see runMavenProcess()
+     *
+     * @param phase  the name of the verification step, used in the timing data
+     * @param goals  the goals given to maven
+     * @param output the builder every line of output is appended to
+     * @param onStart called with the process once it has been started
+     * @param onLine called with every line of output
+     * @return the exit code of maven
+     * @throws IOException          if maven cannot be started or its output cannot be read
+     * @throws InterruptedException if the thread is interrupted while waiting for a permit or for maven to exit
+     */
+    private int runMaven(String phase, String goals, StringBuilder output,
+                         Consumer<Process> onStart, Consumer<String> onLine)
+            throws IOException, InterruptedException {
+        if (runPermits == null)
+            return runMavenProcess(phase, goals, output, onStart, onLine);
+        // The time spent waiting for a permit is not part of the phase
+        runPermits.acquire();
+        try {
+            return runMavenProcess(phase, goals, output, onStart, onLine);
+        } finally {
+            runPermits.release();
+        }
+    }
+
+    /**
+     * Runs maven with the configured executor, falling back to a forked maven if it cannot be started, and records
+     * the timing and the resource usage of the invocation
+     * The whole output is consumed so that maven never blocks on a full pipe
+     *
+     * @param phase  the name of the verification step, used in the timing data
+     * @param goals  the goals given to maven
+     * @param output the builder every line of output is appended to
+     * @param onStart called with the process once it has been started
+     * @param onLine called with every line of output
+     * @return the exit code of maven
+     * @throws IOException          if maven cannot be started or its output cannot be read
+     * @throws InterruptedException if the thread is interrupted while waiting for maven to exit
+     */
+    private int runMavenProcess(String phase, String goals, StringBuilder output,
+                                Consumer<Process> onStart, Consumer<String> onLine)
+            throws IOException, InterruptedException {
+        long startTime = System.nanoTime();
+        MavenExecutor executor = mavenExecutor;
+        Process process;
+        try {
+            process = executor.start(projectFolder, goals);
+        } catch (IOException e) {
+            if (executor instanceof ForkedMavenExecutor)
+                throw e;
+            System.err.println("Failed to start the " + executor.name() + " maven executor, falling back to a "
+                    + "forked maven: " + e.getMessage());
+            // The forked maven must still run the JDK the build was given, e.g. the one of a JDK matrix entry
+            executor = new ForkedMavenExecutor(executor.environment());
+            process = executor.start(projectFolder, goals);
+        }
+        onStart.accept(process);
+        ResourceSampler sampler = new ResourceSampler(process, 250);
+
+        long firstLineTime = -1;
+        int exitCode;
+        try {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream())
+            )) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (firstLineTime < 0)
+                        firstLineTime = System.nanoTime();
+                    output.append(line).append("\n");
+                    onLine.accept(line);
+                }
+            }
+            exitCode = process.waitFor();
+        } finally {
+            sampler.close();
+        }
+        long endTime = System.nanoTime();
+        resourceUsage.add(sampler.finish(phase, Duration.ofNanos(endTime - startTime)));
+        phaseTimings.add(new PhaseTiming(phase, executor.name(),
+                ((firstLineTime < 0 ? endTime : firstLineTime) - startTime) / 1_000_000,
+                (endTime - startTime) / 1_000_000));
+        return exitCode;
+    }
 
     /**
      * Walks through the given folder and its subfolders to find all xml files and loads their content
@@ -195,6 +527,58 @@ public class CodeVerifier {
         return compilationOutput;
     }
 
+    /**
+     * Returns the timing of every maven invocation made so far, in execution order
+     *
+     * @return a List with one PhaseTiming per call to verifyCompilation() or runTests()
+     */
+    public List<PhaseTiming> getPhaseTimings() {
+        return List.copyOf(phaseTimings);
+    }
+
+    /**
+     * Returns the resources used by every maven invocation made so far, in execution order
+     *
+     * @return a List with one ResourceUsage per call to verifyCompilation() or runTests()
+     */
+    public List<ResourceUsage> getResourceUsage() {
+        return List.copyOf(resourceUsage);
+    }
+
+    /**
+     * If the tests have already been run, this returns the console output
+     *
+     * @return the console output of the maven test run
+     * @throws IllegalStateException if the tests have not been run yet
+     */
+    public String getTestOutput() {
+        if (!isTested)
+            throw new IllegalStateException("No test has been run yet.");
+        return testOutput;
+    }
+
+    /**
+     * Returns the console output of the reruns made by rerunFailedTests()
+     *
+     * @return the console output of every rerun, empty if no test has been rerun
+     */
+    public String getRerunOutput() {
+        return rerunOutput;
+    }
+
+    /**
+     * If the tests have already been run, this returns the test result xml files grouped by module
+     *
+     * @return the test result xml files from surefire, keyed by the relative path of their module ("." for the root
+     * project)
+     * @throws IllegalStateException if the tests have not been run yet
+     */
+    public Map<String, List<Document>> getTestXmlByModule() {
+        if (!isTested)
+            throw new IllegalStateException("No test has been run yet.");
+        return testXmlByModule;
+    }
+
     /**
      * If the tests have already been run, this returns the test result xml files
      *
@@ -0,0 +1,86 @@
+package code_verification;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Executor delegating the builds to the Maven Daemon (mvnd).
+ * <p>
+ * mvnd keeps pre-warmed maven JVMs alive between builds and loads the plugins of every build in isolated
+ * classloaders, so the JVM startup, maven bootstrap and plugin loading costs are only paid by the first build
+ * served by a daemon. The client itself is a native executable with a negligible startup time.
+ * </p>
+ */
+public class DaemonMavenExecutor implements MavenExecutor {
+
+    private final String command;
+    private final Map<String, String> environment;
+
+    /**
+     * Class constructor
+     *
+     * @param command the name or the path of the mvnd executable
+     */
+    public DaemonMavenExecutor(String command) {
+        this(command, Map.of());
+    }
+
+    /**
+     * Class constructor
+     *
+     * @param command     the name or the path of the mvnd executable
+     * @param environment the variables added to the environment of mvnd, e.g. JAVA_HOME to get a daemon running
+     *                    another JDK
+     */
+    public DaemonMavenExecutor(String command, Map<String, String> environment) {
+        this.command = command;
+        this.environment = Map.copyOf(environment);
+    }
+
+    /**
+     * Tells whether the mvnd executable can be found, so that the caller can fall back to a ForkedMavenExecutor
+     *
+     * @return true if the command is an existing executable file or is found in one of the PATH folders
+     */
+    public boolean isAvailable() {
+        if (command.contains(File.separator))
+            return new File(command).canExecute();
+        String path = System.getenv("PATH");
+        if (path == null)
+            return false;
+        for (String folder : path.split(File.pathSeparator)) {
+            if (new File(folder, command).canExecute())
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IOException if mvnd cannot be found, so that CodeVerifier falls back to a forked maven
+     */
+    @Override
+    public Process start(File projectFolder, String goals) throws IOException {
+        if (!isAvailable())
+            throw new IOException("mvnd executable not found: " + command);
+        ProcessBuilder builder = new ProcessBuilder();
+        // -B keeps the plain maven console output that the verifier parses
+        builder.command("sh", "-c", command + " -B " + goals);
+        builder.directory(projectFolder);
+        builder.environment().putAll(environment);
+        builder.redirectErrorStream(true);
+        return builder.start();
+    }
+
+    @Override
+    public String name() {
+        return "daemon";
+    }
+
+    @Override
+    public Map<String, String> environment() {
+        return environment;
+    }
+}
@@ -0,0 +1,181 @@
+package code_verification;
+
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class watches a running maven test process and reports the first sign of failure as soon as it shows up,
+ * either in the streamed console output or in a surefire xml report written to the report directory.
+ * <p>
+ * The listener is called at most once per monitor. If requested, the maven process and its children are stopped
+ * right after the listener has been called.
+ * </p>
+ */
+public class FailFastMonitor implements AutoCloseable {
+
+    /**
+     * Callback notified of the first failure detected while the tests are still running
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called once, from the thread that detected the failure
+         *
+         * @param reason a short human readable description of the failure
+         */
+        void onFirstFailure(String reason);
+    }
+
+    private static final Pattern TEST_SUMMARY_PATTERN =
+            Pattern.compile("Tests run: \\d+, Failures: (\\d+), Errors: (\\d+)");
+    // "name(Class)  Time elapsed" up to surefire 2.x, "Class.name -- Time elapsed" from 3.0, prefixed with "[ERROR] "
+    // from 2.19, the name cannot contain a comma so that the class summary "Skipped: 0, Time elapsed" is not taken
+    private static final Pattern FAILED_TEST_PATTERN = Pattern.compile(
+            "(?:^|\\s)(?:\\[ERROR]\\s+)?([^\\s,]+)(?:\\s+--)?\\s+Time elapsed: .*<<< (FAILURE|ERROR)!");
+
+    private final Listener listener;
+    private final boolean stopOnFailure;
+    private final AtomicBoolean triggered = new AtomicBoolean(false);
+    private Process process;
+    private final List<Thread> reportWatchers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Class constructor
+     *
+     * @param listener      the callback notified of the first failure
+     * @param stopOnFailure true if the monitored process should be stopped after the first failure
+     */
+    public FailFastMonitor(Listener listener, boolean stopOnFailure) {
+        this.listener = listener;
+        this.stopOnFailure = stopOnFailure;
+    }
+
+    /**
+     * Attaches the process to stop on failure, must be called before any line is given to the monitor
+     *
+     * @param process the maven process being monitored
+     */
+    void attach(Process process) {
+        this.process = process;
+    }
+
+    /**
+     * Inspects one line of the maven console output
+     *
+     * @param line the line as printed by maven
+     */
+    void onLine(String line) {
+        if (line.contains("COMPILATION ERROR")) {
+            trigger("Compilation error: " + line);
+            return;
+        }
+        Matcher failedTest = FAILED_TEST_PATTERN.matcher(line);
+        if (failedTest.find()) {
+            trigger("Test " + failedTest.group(2).toLowerCase() + ": " + failedTest.group(1));
+            return;
+        }
+        Matcher summary = TEST_SUMMARY_PATTERN.matcher(line);
+        if (summary.find() && (Integer.parseInt(summary.group(1)) > 0 || Integer.parseInt(summary.group(2)) > 0))
+            trigger("Test failures: " + line.trim());
+    }
+
+    /**
+     * Starts a daemon thread parsing every xml report created in the given folder, looking for failing test cases
+     * A multi-module build announces one folder per module, each of them gets its own watcher
+     *
+     * @param reportFolder the surefire report directory announced on the console
+     */
+    void watchReports(String reportFolder) {
+        Path folder = Paths.get(reportFolder);
+        Thread reportWatcher = new Thread(() -> {
+            try {
+                Files.createDirectories(folder);
+                try (WatchService watchService = folder.getFileSystem().newWatchService()) {
+                    folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY);
+                    while (!triggered.get() && !Thread.currentThread().isInterrupted()) {
+                        WatchKey key = watchService.poll(200, TimeUnit.MILLISECONDS);
+                        if (key == null)
+                            continue;
+                        for (WatchEvent<?> event : key.pollEvents()) {
+                            if (event.context() instanceof Path file && file.toString().endsWith(".xml"))
+                                inspectReport(folder.resolve(file));
+                        }
+                        key.reset();
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to watch surefire reports: " + e.getMessage());
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // The test run is over
+            }
+        }, "fail-fast-report-watcher");
+        reportWatcher.setDaemon(true);
+        reportWatchers.add(reportWatcher);
+        reportWatcher.start();
+    }
+
+    private void inspectReport(Path report) {
+        try {
+            String content = Files.readString(report);
+            Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                    .parse(new InputSource(new StringReader(content)));
+            for (TestCaseResult result : TestCaseResult.fromReports(List.of(doc))) {
+                if (result.failed()) {
+                    trigger("Test failure: " + result.id());
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            // The report is still being written, the next modification event will let us read it again
+        }
+    }
+
+    private void trigger(String reason) {
+        if (!triggered.compareAndSet(false, true))
+            return;
+        listener.onFirstFailure(reason);
+        if (stopOnFailure && process != null) {
+            // Process.destroy() would also close the output stream that is still being read, the handle does not
+            process.descendants().forEach(ProcessHandle::destroy);
+            process.toHandle().destroy();
+        }
+    }
+
+    /**
+     * Tells whether a failure has been detected
+     *
+     * @return true if the listener has been called
+     */
+    public boolean hasTriggered() {
+        return triggered.get();
+    }
+
+    /**
+     * Tells whether the monitored process was stopped because of a failure
+     *
+     * @return true if a failure was detected and the monitor was asked to stop the process
+     */
+    public boolean hasStopped() {
+        return stopOnFailure && triggered.get();
+    }
+
+    /**
+     * Stops watching the report directories
+     */
+    @Override
+    public void close() {
+        reportWatchers.forEach(Thread::interrupt);
+    }
+}
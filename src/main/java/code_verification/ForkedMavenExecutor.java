@@ -0,0 +1,49 @@
+package code_verification;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Default executor starting a new shell and a new maven JVM for every build step
+ */
+public class ForkedMavenExecutor implements MavenExecutor {
+
+    private final Map<String, String> environment;
+
+    /**
+     * Class constructor, maven runs with the environment of the server
+     */
+    public ForkedMavenExecutor() {
+        this(Map.of());
+    }
+
+    /**
+     * Class constructor
+     *
+     * @param environment the variables added to the environment of maven, e.g. JAVA_HOME to build with another JDK
+     */
+    public ForkedMavenExecutor(Map<String, String> environment) {
+        this.environment = Map.copyOf(environment);
+    }
+
+    @Override
+    public Process start(File projectFolder, String goals) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder();
+        builder.command("sh", "-c", "mvn " + goals);
+        builder.directory(projectFolder);
+        builder.environment().putAll(environment);
+        builder.redirectErrorStream(true);
+        return builder.start();
+    }
+
+    @Override
+    public String name() {
+        return "forked";
+    }
+
+    @Override
+    public Map<String, String> environment() {
+        return environment;
+    }
+}
@@ -0,0 +1,35 @@
+package code_verification;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Strategy used by CodeVerifier to launch the maven builds of a project
+ */
+public interface MavenExecutor {
+
+    /**
+     * Starts maven with the given goals, the standard error of the process must be redirected to its standard output
+     *
+     * @param projectFolder the folder containing the pom.xml of the project
+     * @param goals         the goals and options given to maven, e.g. "test"
+     * @return the started process
+     * @throws IOException if the process cannot be started
+     */
+    Process start(File projectFolder, String goals) throws IOException;
+
+    /**
+     * Short name of the executor, used in the build timing data
+     *
+     * @return a name such as "forked" or "daemon"
+     */
+    String name();
+
+    /**
+     * Variables added to the environment of maven, e.g. the JAVA_HOME of a JDK matrix entry
+     *
+     * @return the variables, empty if maven runs with the environment of the server
+     */
+    Map<String, String> environment();
+}
@@ -0,0 +1,96 @@
+package code_verification;
+
+/**
+ * This class bounds the number of maven processes running at the same time across all the CodeVerifier instances
+ * sharing it, whatever started them: the build of a push, the entries of its JDK matrix or the probes of a bisection.
+ * <p>
+ * A CodeVerifier takes a permit before starting maven and gives it back once maven has exited. The limit can be
+ * changed at any time, e.g. by the concurrency limiter, the processes already running are not stopped when it
+ * decreases.
+ * </p>
+ */
+public class MavenRunPermits {
+
+    private int limit;
+    private int active;
+    private int waiting;
+
+    /**
+     * Class constructor
+     *
+     * @param limit the number of maven processes allowed to run at the same time, at least 1
+     * @throws IllegalArgumentException if the limit is lower than 1
+     */
+    public MavenRunPermits(int limit) {
+        setLimit(limit);
+    }
+
+    /**
+     * Waits until fewer maven processes than the limit are running and takes a permit
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public synchronized void acquire() throws InterruptedException {
+        waiting++;
+        try {
+            while (active >= limit)
+                wait();
+        } finally {
+            waiting--;
+        }
+        active++;
+    }
+
+    /**
+     * Gives back a permit taken by acquire()
+     */
+    public synchronized void release() {
+        active--;
+        notifyAll();
+    }
+
+    /**
+     * Changes the number of maven processes allowed to run at the same time
+     *
+     * @param limit the new limit, at least 1
+     * @throws IllegalArgumentException if the limit is lower than 1
+     */
+    public synchronized void setLimit(int limit) {
+        if (limit < 1)
+            throw new IllegalArgumentException("The limit must be at least 1.");
+        this.limit = limit;
+        notifyAll();
+    }
+
+    /**
+     * Getter for the number of permits taken
+     *
+     * @return the number of maven processes running
+     */
+    public synchronized int getActive() {
+        return active;
+    }
+
+    /**
+     * Getter for the number of threads waiting for a permit
+     *
+     * @return the number of maven processes waiting to start
+     */
+    public synchronized int getWaiting() {
+        return waiting;
+    }
+
+    /**
+     * Appends the state of the permits in the Prometheus text format
+     *
+     * @param metrics the builder the metrics are appended to
+     */
+    public synchronized void appendPrometheus(StringBuilder metrics) {
+        metrics.append("# TYPE ci_maven_runs_active gauge\n")
+                .append("ci_maven_runs_active ").append(active).append('\n');
+        metrics.append("# TYPE ci_maven_runs_waiting gauge\n")
+                .append("ci_maven_runs_waiting ").append(waiting).append('\n');
+        metrics.append("# TYPE ci_maven_runs_limit gauge\n")
+                .append("ci_maven_runs_limit ").append(limit).append('\n');
+    }
+}
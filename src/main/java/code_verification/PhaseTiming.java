@@ -0,0 +1,13 @@
+package code_verification;
+
+/**
+ * Timing data of one maven invocation made by CodeVerifier
+ *
+ * @param phase           the verification step, "compile" or "test"
+ * @param executor        the name of the MavenExecutor that ran the step
+ * @param bootstrapMillis the time between the start of the process and its first line of output, which is mostly
+ *                        spent starting the JVM and bootstrapping maven
+ * @param totalMillis     the wall time of the whole invocation
+ */
+public record PhaseTiming(String phase, String executor, long bootstrapMillis, long totalMillis) {
+}
@@ -0,0 +1,157 @@
+package code_verification;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * This class periodically samples the resources used by a process and all of its descendants, e.g. the shell
+ * started by a MavenExecutor, the maven JVM and the JVMs forked by surefire.
+ * <p>
+ * On Linux the values are read from /proc: CPU time and thread count from /proc/[pid]/stat, resident memory from
+ * /proc/[pid]/status and storage I/O from /proc/[pid]/io. Elsewhere only the CPU time reported by ProcessHandle is
+ * available. CPU time and I/O are cumulative per process, so the last value seen for each process is kept and
+ * summed. The CPU time and I/O of a process include those of the children it has waited for, so processes living
+ * shorter than the sampling interval are still counted through their parent, and the samples of a process that has
+ * left the tree are dropped as its parent now accounts for it. The root is only waited for by the JVM, so its last
+ * sample is always kept.
+ * </p>
+ */
+public class ResourceSampler implements AutoCloseable {
+
+    // USER_HZ, the unit of the CPU times of /proc/[pid]/stat, is 100 on every mainstream Linux architecture
+    private static final long CLOCK_TICKS_PER_SECOND = 100;
+    private static final Path PROC = Path.of("/proc");
+
+    private record ProcessSample(long cpuMillis, long readBytes, long writeBytes) {
+    }
+
+    private final ProcessHandle root;
+    private final Map<Long, ProcessSample> lastSamples = new ConcurrentHashMap<>();
+    private final Thread sampler;
+    private volatile long peakRssKb;
+    private volatile int peakThreads;
+
+    /**
+     * Class constructor starts sampling right away on a daemon thread
+     *
+     * @param process        the root of the process tree to sample
+     * @param intervalMillis the delay between two samples
+     */
+    public ResourceSampler(Process process, long intervalMillis) {
+        this.root = process.toHandle();
+        this.sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                sample();
+                try {
+                    Thread.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "resource-sampler-" + root.pid());
+        this.sampler.setDaemon(true);
+        this.sampler.start();
+    }
+
+    /**
+     * Takes one sample of every live process of the tree
+     */
+    void sample() {
+        long rssKb = 0;
+        int threads = 0;
+        List<ProcessHandle> tree = Stream.concat(Stream.of(root), root.descendants()).toList();
+        Set<Long> alive = new HashSet<>();
+        for (ProcessHandle handle : tree) {
+            if (!handle.isAlive())
+                continue;
+            alive.add(handle.pid());
+            Path proc = PROC.resolve(Long.toString(handle.pid()));
+            try {
+                String stat = Files.readString(proc.resolve("stat"));
+                // The command name may contain spaces, the numeric fields start after its closing parenthesis
+                String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+                // utime and stime of the process, then cutime and cstime of the children it has waited for
+                long ticks = Long.parseLong(fields[11]) + Long.parseLong(fields[12])
+                        + Long.parseLong(fields[13]) + Long.parseLong(fields[14]);
+                threads += Integer.parseInt(fields[17]);
+                rssKb += readStatusField(proc.resolve("status"), "VmRSS:");
+                long[] io = readIo(proc.resolve("io"));
+                lastSamples.put(handle.pid(),
+                        new ProcessSample(ticks * 1000 / CLOCK_TICKS_PER_SECOND, io[0], io[1]));
+            } catch (IOException | RuntimeException e) {
+                // No /proc, or the process exited while being read
+                handle.info().totalCpuDuration().ifPresent(cpu ->
+                        lastSamples.put(handle.pid(), new ProcessSample(cpu.toMillis(), 0, 0)));
+            }
+        }
+        // Once the root has exited, its last sample predates the exit of its children, they must be kept
+        if (alive.contains(root.pid()))
+            lastSamples.keySet().removeIf(pid -> pid != root.pid() && !alive.contains(pid));
+        peakRssKb = Math.max(peakRssKb, rssKb);
+        peakThreads = Math.max(peakThreads, threads);
+    }
+
+    private static long readStatusField(Path status, String field) throws IOException {
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith(field))
+                return Long.parseLong(line.substring(field.length()).trim().split("\\s+")[0]);
+        }
+        return 0;
+    }
+
+    private static long[] readIo(Path io) {
+        long[] result = new long[2];
+        try {
+            for (String line : Files.readAllLines(io)) {
+                if (line.startsWith("read_bytes:"))
+                    result[0] = Long.parseLong(line.substring("read_bytes:".length()).trim());
+                else if (line.startsWith("write_bytes:"))
+                    result[1] = Long.parseLong(line.substring("write_bytes:".length()).trim());
+            }
+        } catch (IOException | RuntimeException e) {
+            // /proc/[pid]/io is not readable on every kernel configuration
+        }
+        return result;
+    }
+
+    /**
+     * Stops sampling and aggregates the samples of the whole process tree
+     *
+     * @param phase the verification step the process belonged to
+     * @param wall  the wall time of the process
+     * @return the resources used by the process tree
+     */
+    public ResourceUsage finish(String phase, Duration wall) {
+        close();
+        long cpuMillis = 0;
+        long readBytes = 0;
+        long writeBytes = 0;
+        for (ProcessSample sample : lastSamples.values()) {
+            cpuMillis += sample.cpuMillis();
+            readBytes += sample.readBytes();
+            writeBytes += sample.writeBytes();
+        }
+        return new ResourceUsage(phase, cpuMillis, peakRssKb, readBytes, writeBytes, wall.toMillis(), peakThreads);
+    }
+
+    /**
+     * Stops sampling
+     */
+    @Override
+    public void close() {
+        sampler.interrupt();
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
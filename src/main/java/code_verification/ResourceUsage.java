@@ -0,0 +1,16 @@
+package code_verification;
+
+/**
+ * Resources consumed by the process tree of one maven invocation made by CodeVerifier
+ *
+ * @param phase       the verification step, "compile" or "test"
+ * @param cpuMillis   the user and system CPU time of the processes, in milliseconds
+ * @param peakRssKb   the highest resident memory of the whole process tree observed at once, in KB
+ * @param readBytes   the bytes read from storage by the processes
+ * @param writeBytes  the bytes written to storage by the processes
+ * @param wallMillis  the wall time of the invocation, in milliseconds
+ * @param peakThreads the highest number of threads of the whole process tree observed at once
+ */
+public record ResourceUsage(String phase, long cpuMillis, long peakRssKb, long readBytes, long writeBytes,
+                            long wallMillis, int peakThreads) {
+}
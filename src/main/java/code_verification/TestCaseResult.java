@@ -0,0 +1,64 @@
+package code_verification;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a single test case as written by maven::surefire in its xml reports
+ *
+ * @param className the fully qualified name of the class declaring the test
+ * @param name      the name of the test method
+ * @param seconds   the duration of the test case in seconds, as reported by surefire
+ * @param failed    true if the test case contains a failure or an error element
+ */
+public record TestCaseResult(String className, String name, double seconds, boolean failed) {
+
+    /**
+     * Identifier of the test case that stays stable from one build to another
+     *
+     * @return a String of the form "className#name"
+     */
+    public String id() {
+        return className + "#" + name;
+    }
+
+    /**
+     * Extracts every test case of the given surefire reports
+     *
+     * @param reports the xml reports produced by maven::surefire
+     * @return a List with one entry per testcase element found in the reports
+     */
+    public static List<TestCaseResult> fromReports(List<Document> reports) {
+        List<TestCaseResult> results = new ArrayList<>();
+        for (Document doc : reports) {
+            NodeList testCases = doc.getElementsByTagName("testcase");
+            for (int i = 0; i < testCases.getLength(); i++) {
+                Element testCase = (Element) testCases.item(i);
+                boolean failed = testCase.getElementsByTagName("failure").getLength() > 0
+                        || testCase.getElementsByTagName("error").getLength() > 0;
+                results.add(new TestCaseResult(
+                        testCase.getAttribute("classname"),
+                        testCase.getAttribute("name"),
+                        parseTime(testCase.getAttribute("time")),
+                        failed
+                ));
+            }
+        }
+        return results;
+    }
+
+    // Surefire may omit the attribute or format large values with a grouping separator (e.g. "1,234.5")
+    private static double parseTime(String time) {
+        if (time == null || time.isBlank())
+            return 0;
+        try {
+            return Double.parseDouble(time.replace(",", ""));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package code_verification;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class keeps a bounded time series of test durations per repository and branch and uses it to detect tests
+ * whose duration regressed compared with their rolling baseline.
+ * <p>
+ * Each series only keeps the last {@code window} samples in a float ring buffer, so the memory used per test does
+ * not grow with the number of builds. The baseline of a series is the mean of its samples, the latest one excluded.
+ * </p>
+ */
+public class TestDurationHistory {
+
+    /**
+     * Duration statistics of one test case or test class
+     *
+     * @param id       the test identifier ("className#name") or the class name for class level statistics
+     * @param latest   the duration measured by the most recent build, in seconds
+     * @param baseline the mean duration of the previous builds in the window, in seconds (0 if there is none)
+     * @param samples  the number of builds the baseline was computed from
+     */
+    public record DurationStat(String id, double latest, double baseline, int samples) {
+
+        /**
+         * Ratio between the latest duration and the baseline
+         *
+         * @return latest / baseline, or 1 if no baseline is available yet
+         */
+        public double ratio() {
+            return baseline > 0 ? latest / baseline : 1;
+        }
+    }
+
+    private final int window;
+    private final int minSamples;
+    private final double threshold;
+    private final double minDeltaSeconds;
+    private final Map<String, Map<String, DurationSeries>> testSeries = new HashMap<>();
+    private final Map<String, Map<String, DurationSeries>> classSeries = new HashMap<>();
+
+    /**
+     * Class constructor sets the parameters used to decide whether a duration regressed
+     *
+     * @param window          the number of builds kept per test
+     * @param minSamples      the number of previous builds needed before a test can be flagged
+     * @param threshold       the relative increase over the baseline above which a test is flagged (0.5 is +50%)
+     * @param minDeltaSeconds the absolute increase, in seconds, under which a test is never flagged
+     * @throws IllegalArgumentException if the window cannot hold minSamples previous builds plus the latest one
+     */
+    public TestDurationHistory(int window, int minSamples, double threshold, double minDeltaSeconds) {
+        if (minSamples < 1 || window <= minSamples)
+            throw new IllegalArgumentException("The window must be larger than the minimum number of samples.");
+        this.window = window;
+        this.minSamples = minSamples;
+        this.threshold = threshold;
+        this.minDeltaSeconds = minDeltaSeconds;
+    }
+
+    /**
+     * Appends the durations of one build to the series of the given repository and branch
+     *
+     * @param repo    the repository URL
+     * @param branch  the branch the build was run on
+     * @param results the test cases extracted from the surefire reports of the build
+     * @return the tests of this build whose duration regressed past the threshold, most regressed first
+     */
+    public synchronized List<DurationStat> record(String repo, String branch, List<TestCaseResult> results) {
+        String key = key(repo, branch);
+        Map<String, DurationSeries> tests = testSeries.computeIfAbsent(key, k -> new HashMap<>());
+        Map<String, DurationSeries> classes = classSeries.computeIfAbsent(key, k -> new HashMap<>());
+
+        Map<String, Double> classDurations = new HashMap<>();
+        List<DurationStat> regressions = new ArrayList<>();
+        for (TestCaseResult result : results) {
+            DurationSeries series = tests.computeIfAbsent(result.id(), id -> new DurationSeries(window));
+            series.add(result.seconds());
+            DurationStat stat = series.stat(result.id());
+            if (isRegression(stat))
+                regressions.add(stat);
+            classDurations.merge(result.className(), result.seconds(), Double::sum);
+        }
+        classDurations.forEach((className, seconds) ->
+                classes.computeIfAbsent(className, id -> new DurationSeries(window)).add(seconds));
+
+        regressions.sort(Comparator.comparingDouble(DurationStat::ratio).reversed());
+        return regressions;
+    }
+
+    /**
+     * Lists the test cases with the longest latest duration
+     *
+     * @param repo   the repository URL
+     * @param branch the branch name
+     * @param limit  the maximum number of entries returned
+     * @return the slowest test cases, slowest first
+     */
+    public synchronized List<DurationStat> slowestTests(String repo, String branch, int limit) {
+        return sorted(testSeries.get(key(repo, branch)), Comparator.comparingDouble(DurationStat::latest), limit);
+    }
+
+    /**
+     * Lists the test classes with the longest latest duration (sum of their test cases)
+     *
+     * @param repo   the repository URL
+     * @param branch the branch name
+     * @param limit  the maximum number of entries returned
+     * @return the slowest test classes, slowest first
+     */
+    public synchronized List<DurationStat> slowestClasses(String repo, String branch, int limit) {
+        return sorted(classSeries.get(key(repo, branch)), Comparator.comparingDouble(DurationStat::latest), limit);
+    }
+
+    /**
+     * Lists the test cases whose latest duration increased the most relative to their baseline
+     *
+     * @param repo   the repository URL
+     * @param branch the branch name
+     * @param limit  the maximum number of entries returned
+     * @return the test cases with a baseline, highest latest / baseline ratio first
+     */
+    public synchronized List<DurationStat> mostRegressedTests(String repo, String branch, int limit) {
+        Map<String, DurationSeries> series = testSeries.get(key(repo, branch));
+        if (series == null)
+            return List.of();
+        // The tests without enough samples must not take the places of the regressed ones
+        return series.entrySet().stream()
+                .map(entry -> entry.getValue().stat(entry.getKey()))
+                .filter(stat -> stat.samples() >= minSamples)
+                .sorted(Comparator.comparingDouble(DurationStat::ratio).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Getter for the relative increase above which a test is flagged as regressed
+     *
+     * @return the threshold given to the constructor
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+
+    private boolean isRegression(DurationStat stat) {
+        return stat.samples() >= minSamples
+                && stat.latest() - stat.baseline() >= minDeltaSeconds
+                && stat.latest() > stat.baseline() * (1 + threshold);
+    }
+
+    private static List<DurationStat> sorted(Map<String, DurationSeries> series,
+                                             Comparator<DurationStat> order, int limit) {
+        if (series == null)
+            return List.of();
+        return series.entrySet().stream()
+                .map(entry -> entry.getValue().stat(entry.getKey()))
+                .sorted(order.reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    private static String key(String repo, String branch) {
+        return repo + "@" + branch;
+    }
+
+    /**
+     * Fixed size ring buffer of durations, oldest samples are overwritten first
+     */
+    private static class DurationSeries {
+        private final float[] samples;
+        private int next;
+        private int size;
+
+        DurationSeries(int capacity) {
+            this.samples = new float[capacity];
+        }
+
+        void add(double seconds) {
+            samples[next] = (float) seconds;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        DurationStat stat(String id) {
+            int latestIndex = (next - 1 + samples.length) % samples.length;
+            double sum = 0;
+            for (int i = 1; i < size; i++)
+                sum += samples[(latestIndex - i + samples.length) % samples.length];
+            int previous = size - 1;
+            return new DurationStat(id, samples[latestIndex], previous > 0 ? sum / previous : 0, previous);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package code_verification;
+
+/**
+ * Outcome of the reruns of a test case that failed during the test run
+ *
+ * @param id       the test identifier ("className#name")
+ * @param attempts the number of reruns made, the rerunning stops at the first one that passes
+ * @param flaky    true if the test passed on one of its reruns, false if it failed every time
+ */
+public record TestRerun(String id, int attempts, boolean flaky) {
+}
@@ -0,0 +1,148 @@
+package server_communication;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.RefSpec;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * This class provides the git operations of a bisection, working from the workspace of the failing build: listing
+ * the commits between a good and a bad commit and checking older commits out in probe workspaces, next to it unless
+ * another folder is given.
+ * <p>
+ * The probe workspaces are cloned from the build workspace rather than from the remote repository, so no commit is
+ * downloaded again, and a probe workspace is reused from one commit to the next so that maven only recompiles what
+ * changed.
+ * </p>
+ */
+public class BisectWorkspace {
+
+    /**
+     * Commit of the bisected range
+     *
+     * @param id          the hash of the commit
+     * @param authorName  the name of the author of the commit
+     * @param authorEmail the email address of the author of the commit
+     * @param summary     the first line of the commit message
+     */
+    public record Commit(String id, String authorName, String authorEmail, String summary) {
+    }
+
+    private final String repoPath;
+    private final Path probeRoot;
+
+    /**
+     * Class constructor creating the probe workspaces next to the build workspace
+     *
+     * @param repoPath the absolute path of the workspace of the failing build, as returned by cloneRepo()
+     */
+    public BisectWorkspace(String repoPath) {
+        this(repoPath, Path.of(repoPath).toAbsolutePath().getParent());
+    }
+
+    /**
+     * Class constructor
+     *
+     * @param repoPath  the absolute path of the workspace of the failing build, as returned by cloneRepo()
+     * @param probeRoot the folder the probe workspaces are created in
+     */
+    public BisectWorkspace(String repoPath, Path probeRoot) {
+        this.repoPath = repoPath;
+        this.probeRoot = probeRoot;
+    }
+
+    /**
+     * Lists the commits reachable from the bad commit and not from the good one
+     *
+     * @param goodCommit the hash of the last commit known to be good
+     * @param badCommit  the hash of the commit known to be bad
+     * @return the commits of the range, oldest first, the bad commit last, empty if the good commit is not an
+     * ancestor known by the workspace
+     * @throws IOException if the repository of the workspace cannot be read
+     */
+    public List<Commit> listCommits(String goodCommit, String badCommit) throws IOException {
+        List<Commit> commits = new ArrayList<>();
+        try (Git git = Git.open(new File(repoPath)); RevWalk walk = new RevWalk(git.getRepository())) {
+            ObjectId good = git.getRepository().resolve(goodCommit);
+            ObjectId bad = git.getRepository().resolve(badCommit);
+            if (good == null || bad == null || !walk.isMergedInto(walk.parseCommit(good), walk.parseCommit(bad)))
+                return commits;
+            walk.reset();
+            walk.sort(RevSort.TOPO);
+            walk.sort(RevSort.REVERSE, true);
+            walk.markStart(walk.parseCommit(bad));
+            walk.markUninteresting(walk.parseCommit(good));
+            for (RevCommit commit : walk) {
+                PersonIdent author = commit.getAuthorIdent();
+                commits.add(new Commit(commit.getName(), author.getName(), author.getEmailAddress(),
+                        commit.getShortMessage()));
+            }
+        }
+        return commits;
+    }
+
+    /**
+     * Checks a commit out in a probe workspace, cloning the probe workspace from the build workspace the first time
+     *
+     * @param slot   the number of the probe workspace
+     * @param commit the hash of the commit to check out
+     * @return the absolute path of the probe workspace
+     * @throws IOException     if the probe workspace cannot be created
+     * @throws GitAPIException if the commit cannot be checked out
+     */
+    public String checkout(int slot, String commit) throws IOException, GitAPIException {
+        File probeDir = probeDir(slot);
+        if (!new File(probeDir, ".git").exists()) {
+            Files.createDirectories(probeRoot);
+            try (Git git = Git.cloneRepository()
+                    .setURI(new File(repoPath).toURI().toString())
+                    .setDirectory(probeDir)
+                    .setNoCheckout(true)
+                    .call()) {
+                // The head of the build workspace may be detached, it is fetched explicitly with all its history
+                git.fetch().setRefSpecs(new RefSpec("+HEAD:refs/bisect/head")).call();
+            }
+        }
+        try (Git git = Git.open(probeDir)) {
+            git.reset().setMode(ResetCommand.ResetType.HARD).setRef(commit).call();
+        }
+        return probeDir.getAbsolutePath();
+    }
+
+    /**
+     * Deletes every probe workspace created by checkout()
+     *
+     * @throws IOException if a probe workspace cannot be deleted
+     */
+    public void deleteProbes() throws IOException {
+        if (!Files.isDirectory(probeRoot))
+            return;
+        String prefix = Path.of(repoPath).getFileName() + "-probe-";
+        try (Stream<Path> siblings = Files.list(probeRoot)) {
+            for (Path probe : siblings.filter(path -> path.getFileName().toString().startsWith(prefix)).toList()) {
+                try (Stream<Path> files = Files.walk(probe)) {
+                    for (Path file : files.sorted(Comparator.reverseOrder()).toList())
+                        Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private File probeDir(int slot) {
+        return probeRoot.resolve(Path.of(repoPath).getFileName() + "-probe-" + slot).toFile();
+    }
+}
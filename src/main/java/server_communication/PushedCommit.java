@@ -0,0 +1,66 @@
+package server_communication;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One of the commits listed in the "commits" array of a GitHub push payload
+ *
+ * @param id          the hash of the commit
+ * @param message     the commit message
+ * @param authorName  the name of the author of the commit
+ * @param authorEmail the email address of the author of the commit
+ * @param added       the paths of the files added by the commit
+ * @param modified    the paths of the files modified by the commit
+ * @param removed     the paths of the files removed by the commit
+ */
+public record PushedCommit(String id, String message, String authorName, String authorEmail,
+                           List<String> added, List<String> modified, List<String> removed) {
+
+    /**
+     * Reads a commit of the payload, the missing fields are left empty
+     *
+     * @param json an element of the "commits" array
+     * @return the commit
+     */
+    public static PushedCommit fromJSON(JSONObject json) {
+        JSONObject author = json.optJSONObject("author");
+        if (author == null)
+            author = new JSONObject();
+        return new PushedCommit(
+                json.getString("id"),
+                json.optString("message"),
+                author.optString("name"),
+                author.optString("email"),
+                toList(json.optJSONArray("added")),
+                toList(json.optJSONArray("modified")),
+                toList(json.optJSONArray("removed"))
+        );
+    }
+
+    /**
+     * Encodes the commit with the structure of the payload, restricted to the fields of the record
+     *
+     * @return a JSONObject that fromJSON() reads back into an equal commit
+     */
+    public JSONObject toJSON() {
+        return new JSONObject()
+                .put("id", id)
+                .put("message", message)
+                .put("author", new JSONObject().put("name", authorName).put("email", authorEmail))
+                .put("added", new JSONArray(added))
+                .put("modified", new JSONArray(modified))
+                .put("removed", new JSONArray(removed));
+    }
+
+    private static List<String> toList(JSONArray array) {
+        List<String> list = new ArrayList<>();
+        if (array != null)
+            for (int i = 0; i < array.length(); i++)
+                list.add(array.getString(i));
+        return List.copyOf(list);
+    }
+}
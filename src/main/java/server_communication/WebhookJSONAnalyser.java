@@ -1,34 +1,71 @@
 package server_communication;
+import build_management.StripedLocks;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.ListBranchCommand;
 import org.eclipse.jgit.api.ResetCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Public class intended to fetch relevant data from JSON webhook request
  */
 public class WebhookJSONAnalyser {
 
-    private final String repoPath;
+    // Guards the build-<repoId>-<commitHash> workspaces against concurrent deletion and cloning
+    private static final StripedLocks WORKSPACE_LOCKS = new StripedLocks(64);
+    // GitHub lists at most this many commits in a push payload
+    private static final int MAX_LISTED_COMMITS = 2048;
+
+    private String repoPath;
     private final String commitHash;
     private final String commitMail;
     private final String commitMessage;
     private final String commitRef;
     private final String commitBranch;
     private final String commitAuthor;
+    private final String beforeHash;
+    private final List<PushedCommit> commits;
+    private final boolean forced;
 
     private final String repoURL; // Set after cloning the repo
 
     /**
-     * Class constructor will parse the given JSON String and set its parameters to the relevant values
+     * Class constructor will parse the given JSON String, set its parameters to the relevant values and clone the
+     * repository
      *
      * @param payload a String containing a JSON encoded GitHub webhook payload
      */
     public WebhookJSONAnalyser(String payload) {
+        this(payload, true);
+    }
+
+    /**
+     * Class constructor will parse the given JSON String and set its parameters to the relevant values
+     *
+     * @param payload a String containing a JSON encoded GitHub webhook payload
+     * @param cloneRepo true to clone the repository right away, false to let the caller do it later through
+     *                  cloneRepo()
+     */
+    public WebhookJSONAnalyser(String payload, boolean cloneRepo) {
         try {
             JSONObject json = new JSONObject(payload);
             // Get the branch name
@@ -45,7 +82,16 @@ public class WebhookJSONAnalyser {
             this.commitAuthor = json.getJSONObject("head_commit").getJSONObject("committer").getString("name");
             // Get the commit message
             this.commitMessage = json.getJSONObject("head_commit").getString("message");
-
+            // Get the previous head of the branch and the pushed commits, oldest first (both optional)
+            this.beforeHash = json.optString("before", null);
+            List<PushedCommit> pushedCommits = new ArrayList<>();
+            JSONArray commitsArray = json.optJSONArray("commits");
+            if (commitsArray != null)
+                for (int i = 0; i < commitsArray.length(); i++)
+                    pushedCommits.add(PushedCommit.fromJSON(commitsArray.getJSONObject(i)));
+            this.commits = List.copyOf(pushedCommits);
+            // A forced push may drop commits, the pushed commits then do not describe the change since "before"
+            this.forced = json.optBoolean("forced", false);
 
             System.out.println("The received webhook data:");
             System.out.println("--------------------------------------------------");
@@ -56,10 +102,12 @@ public class WebhookJSONAnalyser {
             System.out.println("Commit Mail: " + commitMail);
             System.out.println("Commit Author: " + commitAuthor);
             System.out.println("Commit Message: " + commitMessage);
+            System.out.println("Pushed Commits: " + commits.size());
             System.out.println("--------------------------------------------------");
 
             // Store the path to the cloned repo
-            this.repoPath = cloneRepo(repoURL, commitHash, commitBranch);
+            if (cloneRepo)
+                this.repoPath = cloneRepo(repoURL, commitHash, commitBranch, getDefaultWorkspaceRoot().toFile());
 
         } catch (Exception e) {
             throw new RuntimeException("The repo is not cloned successfully");
@@ -68,11 +116,76 @@ public class WebhookJSONAnalyser {
 
     }
 
+    /**
+     * Clones the repository of the payload and resets it to the commit of the payload, for analysers created
+     * without cloning
+     *
+     * @return The absolute path of the cloned repository, also returned by getRepoPath() from now on.
+     * Returns null if an error occurs during the cloning process.
+     */
+    public String cloneRepo() {
+        return cloneRepo(getDefaultWorkspaceRoot());
+    }
+
+    /**
+     * Clones the repository of the payload in the given folder and resets it to the commit of the payload, for
+     * analysers created without cloning
+     *
+     * @param workspaceRoot the folder the build-commitHash workspace is created in, e.g. on a memory-backed
+     *                      filesystem
+     * @return The absolute path of the cloned repository, also returned by getRepoPath() from now on.
+     * Returns null if an error occurs during the cloning process.
+     */
+    public String cloneRepo(Path workspaceRoot) {
+        this.repoPath = cloneRepo(repoURL, commitHash, commitBranch, workspaceRoot.toFile());
+        return repoPath;
+    }
+
+    /**
+     * Returns the folder the workspaces are created in when no other folder is given
+     *
+     * @return the dd2480-builds folder of the system temporary directory
+     */
+    public static Path getDefaultWorkspaceRoot() {
+        return Path.of(System.getProperty("java.io.tmpdir"), "dd2480-builds");
+    }
+
+    /**
+     * Returns the name of the folder a commit of a repository is cloned in. The name holds a digest of the
+     * repository URL as well as the commit hash, so that a fork or a mirror pushing the same commit as its upstream
+     * gets its own workspace, like it gets its own build.
+     *
+     * @param repoURL    the URL of the repository
+     * @param commitHash the hash of the commit
+     * @return the name "build-" followed by the first 8 hexadecimal digits of the SHA-256 of the URL, "-" and the
+     * commit hash
+     */
+    public static String getWorkspaceName(String repoURL, String commitHash) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(repoURL.getBytes(StandardCharsets.UTF_8));
+            return "build-" + HexFormat.of().formatHex(digest, 0, 4) + "-" + commitHash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Returns the lock guarding the workspace a commit of a repository is cloned in. The lock is held while the
+     * workspace is deleted or cloned.
+     *
+     * @param repoURL    the URL of the repository
+     * @param commitHash the hash of the commit
+     * @return a reentrant lock, shared by every workspace of the same repository and commit hash
+     */
+    public static Lock getWorkspaceLock(String repoURL, String commitHash) {
+        return WORKSPACE_LOCKS.get(getWorkspaceName(repoURL, commitHash));
+    }
+
     /**
      * Clones a Git repository to a temporary directory and resets it to a specific commit.
      * <p>
-     * This method creates a unique directory for the specified commit within a base
-     * temporary directory. If a directory for the commit already exists, it is deleted
+     * This method creates a unique directory for the specified repository and commit within a base
+     * temporary directory, see getWorkspaceName(). If a directory for the commit already exists, it is deleted
      * before the clone operation. After cloning, the method checks out the specified
      * branch and performs a hard reset to ensure the working directory matches the
      * exact state of the specified commit.
@@ -81,20 +194,20 @@ public class WebhookJSONAnalyser {
      * @param repoURL    The URL of the Git repository to clone.
      * @param commitHash The hash of the commit to which the repository should be reset.
      * @param branchName The name of the branch to check out after cloning.
-     * @return The absolute path of the cloned repository in the temporary directory.
+     * @param baseDir    The folder the build directory is created in.
+     * @return The absolute path of the cloned repository in the base directory.
      * Returns null if an error occurs during the cloning process.
      */
-    private String cloneRepo(String repoURL, String commitHash, String branchName) {
+    private String cloneRepo(String repoURL, String commitHash, String branchName, File baseDir) {
+        Lock workspaceLock = getWorkspaceLock(repoURL, commitHash);
+        workspaceLock.lock();
         try {
-            // Get system temp directory in a platform-independent way
-            File tempDir = new File(System.getProperty("java.io.tmpdir"));
-            File baseDir = new File(tempDir, "dd2480-builds");
             if (!baseDir.exists()) {
-                baseDir.mkdir();
+                baseDir.mkdirs();
             }
 
-            // Create a unique directory for this build using the commit hash
-            String buildDir = "build-" + commitHash;
+            // Create a unique directory for this build using the repository and the commit hash
+            String buildDir = getWorkspaceName(repoURL, commitHash);
             File repoDir = new File(baseDir, buildDir);
             //if the directory exists for a commit hash, then delete it
             if (repoDir.exists()) {
@@ -147,6 +260,8 @@ public class WebhookJSONAnalyser {
         } catch (Exception e) {
             e.printStackTrace();
             return null;
+        } finally {
+            workspaceLock.unlock();
         }
     }
 
@@ -157,21 +272,41 @@ public class WebhookJSONAnalyser {
      *                   purposes
      */
     public void deleteRepo(String commitHash){
-        // Get system temp directory in a platform-independent way
-        File tempDir = new File(System.getProperty("java.io.tmpdir"));
-        File baseDir = new File(tempDir, "dd2480-builds");
+        File baseDir = getDefaultWorkspaceRoot().toFile();
         if (!baseDir.exists()) {
             throw new RuntimeException("dd2480-builds directory does not exist!");
         }
-        String buildDir = "build-" + commitHash;
+        String buildDir = getWorkspaceName(repoURL, commitHash);
         File repoDir = new File(baseDir, buildDir);
         //if the directory does not exist for a commit hash, throw error
         if (!repoDir.exists()) {
             throw new RuntimeException("The repo does not exist!");
         }
         //else delete it
-        deleteDirectory(repoDir);
+        Lock workspaceLock = getWorkspaceLock(repoURL, commitHash);
+        workspaceLock.lock();
+        try {
+            deleteDirectory(repoDir);
+        } finally {
+            workspaceLock.unlock();
+        }
+
+    }
 
+    /**
+     * Deletes the workspace this analyser cloned, wherever it was created
+     * @throws IllegalStateException if the repository has not been cloned
+     */
+    public void deleteRepo() {
+        if (repoPath == null)
+            throw new IllegalStateException("The repo has not been cloned");
+        Lock workspaceLock = getWorkspaceLock(repoURL, commitHash);
+        workspaceLock.lock();
+        try {
+            deleteDirectory(new File(repoPath));
+        } finally {
+            workspaceLock.unlock();
+        }
     }
 
     private void deleteDirectory(File directory) {
@@ -189,6 +324,29 @@ public class WebhookJSONAnalyser {
         directory.delete();
     }
 
+    /**
+     * Encodes the extracted fields as a minimal webhook payload, that can be given back to the constructor to
+     * rebuild an equivalent analyser, e.g. when a job is replayed from the job journal
+     *
+     * @return a JSONObject with the same structure as a GitHub push payload, restricted to the used fields
+     */
+    public JSONObject toJSON() {
+        JSONArray commitsArray = new JSONArray();
+        commits.forEach(commit -> commitsArray.put(commit.toJSON()));
+        return new JSONObject()
+                .put("ref", commitRef)
+                .put("before", beforeHash)
+                .put("commits", commitsArray)
+                .put("forced", forced)
+                .put("repository", new JSONObject().put("html_url", repoURL))
+                .put("head_commit", new JSONObject()
+                        .put("id", commitHash)
+                        .put("message", commitMessage)
+                        .put("committer", new JSONObject()
+                                .put("email", commitMail)
+                                .put("name", commitAuthor)));
+    }
+
     /**
      * Attribute getter for the commit email address
      * @return a String containing the commit author's email
@@ -253,5 +411,74 @@ public class WebhookJSONAnalyser {
         return commitAuthor;
     }
 
+    /**
+     * Attribute getter for the head of the branch before the push
+     * @return a String containing the previous commit hash, null if the payload does not give it, all zeros for a
+     * new branch
+     */
+    public String getBeforeHash() {
+        return beforeHash;
+    }
+
+    /**
+     * Attribute getter for the commits of the push
+     * @return the pushed commits, oldest first, empty if the payload does not list them
+     */
+    public List<PushedCommit> getCommits() {
+        return commits;
+    }
+
+    /**
+     * Lists the files changed by the push according to the payload, i.e. the files added, modified or removed by
+     * the pushed commits
+     * @return the paths relative to the root of the repository, or null if the payload cannot tell: no commits or
+     * no files listed, a forced push, or a list truncated by GitHub
+     */
+    public Set<String> getPushedFiles() {
+        if (commits.isEmpty() || forced || commits.size() >= MAX_LISTED_COMMITS)
+            return null;
+        Set<String> files = new LinkedHashSet<>();
+        for (PushedCommit commit : commits) {
+            files.addAll(commit.added());
+            files.addAll(commit.modified());
+            files.addAll(commit.removed());
+        }
+        return files.isEmpty() ? null : files;
+    }
+
+    /**
+     * Lists the files that differ between the given commit and the built commit, by comparing their trees in the
+     * cloned repository
+     * @param fromCommit the hash of the commit to compare with, e.g. the head of the branch before the push
+     * @return the paths relative to the root of the repository, or null if the repository is not cloned or does not
+     * hold the given commit
+     */
+    public Set<String> listChangedFiles(String fromCommit) {
+        if (repoPath == null || fromCommit == null)
+            return null;
+        try (Git git = Git.open(new File(repoPath));
+             ObjectReader reader = git.getRepository().newObjectReader();
+             RevWalk walk = new RevWalk(reader)) {
+            ObjectId from = git.getRepository().resolve(fromCommit + "^{commit}");
+            ObjectId to = git.getRepository().resolve(commitHash + "^{commit}");
+            if (from == null || to == null)
+                return null;
+            CanonicalTreeParser fromTree = new CanonicalTreeParser(null, reader, walk.parseCommit(from).getTree());
+            CanonicalTreeParser toTree = new CanonicalTreeParser(null, reader, walk.parseCommit(to).getTree());
+            Set<String> files = new LinkedHashSet<>();
+            for (DiffEntry entry : git.diff().setOldTree(fromTree).setNewTree(toTree).setShowNameAndStatusOnly(true)
+                    .call()) {
+                if (!entry.getOldPath().equals(DiffEntry.DEV_NULL))
+                    files.add(entry.getOldPath());
+                if (!entry.getNewPath().equals(DiffEntry.DEV_NULL))
+                    files.add(entry.getNewPath());
+            }
+            return files;
+        } catch (IOException | GitAPIException e) {
+            System.err.println("Failed to list the files changed since " + fromCommit + ": " + e.getMessage());
+            return null;
+        }
+    }
+
 }
 
@@ -0,0 +1,70 @@
+package build_management;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdmissionControllerTest {
+
+    private static final String REPO = "https://github.com/DD2480-Group-27/LaunchInterceptor";
+    private final long[] now = {0};
+
+    @Test
+    public void testRateLimitPerRepository() {
+        // Burst of 2, then one build every 10 seconds
+        var controller = new AdmissionController(2, 6, 100, 30, () -> now[0]);
+        assertEquals(AdmissionController.Status.ADMITTED, controller.admit(REPO).status());
+        assertEquals(AdmissionController.Status.ADMITTED, controller.admit(REPO).status());
+
+        var rejected = controller.admit(REPO);
+        assertEquals(AdmissionController.Status.RATE_LIMITED, rejected.status());
+        assertEquals(10, rejected.retryAfterSeconds());
+        assertEquals(AdmissionController.Status.ADMITTED, controller.admit("https://github.com/other").status());
+
+        now[0] += 10_000_000_000L;
+        assertEquals(AdmissionController.Status.ADMITTED, controller.admit(REPO).status());
+        assertEquals(1, controller.getRateLimited());
+        assertEquals(4, controller.getAdmitted());
+        assertEquals(4, controller.getPending());
+    }
+
+    @Test
+    public void testFullBucketsDropped() {
+        var controller = new AdmissionController(2, 6, Integer.MAX_VALUE, 30, () -> now[0]);
+        for (int i = 0; i < AdmissionController.SWEEP_INTERVAL - 1; i++) {
+            controller.admit("https://example.com/repo-" + i);
+            controller.release();
+        }
+        assertEquals(AdmissionController.SWEEP_INTERVAL - 1, controller.getTrackedRepositories());
+
+        // Every bucket refilled, only the one of the new request is left
+        now[0] += 10_000_000_000L;
+        assertEquals(AdmissionController.Status.ADMITTED, controller.admit(REPO).status());
+        assertEquals(1, controller.getTrackedRepositories());
+    }
+
+    @Test
+    public void testGlobalPendingCap() {
+        var controller = new AdmissionController(10, 60, 2, 30, () -> now[0]);
+        assertEquals(AdmissionController.Status.ADMITTED, controller.admit(REPO).status());
+        assertEquals(AdmissionController.Status.ADMITTED, controller.admit(REPO).status());
+
+        var rejected = controller.admit(REPO);
+        assertEquals(AdmissionController.Status.SATURATED, rejected.status());
+        assertEquals(30, rejected.retryAfterSeconds());
+        assertEquals(2, controller.getPending());
+
+        controller.release();
+        assertEquals(AdmissionController.Status.ADMITTED, controller.admit(REPO).status());
+        assertEquals(1, controller.getSaturated());
+    }
+
+    @Test
+    public void testSaturationDoesNotConsumeTokens() {
+        var controller = new AdmissionController(2, 0.001, 1, 30, () -> now[0]);
+        assertEquals(AdmissionController.Status.ADMITTED, controller.admit(REPO).status());
+        assertEquals(AdmissionController.Status.SATURATED, controller.admit(REPO).status());
+        controller.release();
+        assertEquals(AdmissionController.Status.ADMITTED, controller.admit(REPO).status());
+    }
+}
@@ -0,0 +1,57 @@
+package build_management;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class BisectorTest {
+
+    private static final List<String> COMMITS = IntStream.range(0, 20).mapToObj(i -> "c" + i).toList();
+
+    private static boolean isGood(String commit) {
+        return Integer.parseInt(commit.substring(1)) < 13;
+    }
+
+    @Test
+    public void testSequentialBisection() throws Exception {
+        var result = new Bisector(1).bisect(COMMITS, (commit, slot) -> isGood(commit));
+        assertEquals("c13", result.firstBad());
+        assertTrue(result.probes() <= 5);
+        assertEquals(result.probes(), result.rounds());
+    }
+
+    @Test
+    public void testParallelBisectionNeedsFewerRounds() throws Exception {
+        Set<String> probed = ConcurrentHashMap.newKeySet();
+        var result = new Bisector(3).bisect(COMMITS, (commit, slot) -> {
+            assertTrue(slot >= 0 && slot < 3);
+            assertTrue("probed twice: " + commit, probed.add(commit));
+            return isGood(commit);
+        });
+        assertEquals("c13", result.firstBad());
+        assertTrue(result.rounds() <= 3);
+    }
+
+    @Test
+    public void testFirstAndSingleCommit() throws Exception {
+        assertEquals("c0", new Bisector(2).bisect(COMMITS, (commit, slot) -> false).firstBad());
+        var single = new Bisector(2).bisect(List.of("head"), (commit, slot) -> {
+            throw new AssertionError("a single commit needs no probe");
+        });
+        assertEquals("head", single.firstBad());
+        assertEquals(0, single.probes());
+    }
+
+    @Test
+    public void testProbeFailureStopsBisection() {
+        assertThrows(ExecutionException.class, () -> new Bisector(2).bisect(COMMITS, (commit, slot) -> {
+            throw new IllegalStateException("checkout failed");
+        }));
+    }
+}
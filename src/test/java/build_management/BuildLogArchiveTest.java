@@ -0,0 +1,88 @@
+package build_management;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.*;
+
+public class BuildLogArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private BuildLogArchive archive;
+    private String log;
+
+    @Before
+    public void setUp() throws IOException {
+        archive = new BuildLogArchive(folder.getRoot().toPath());
+        // Large enough to span several chunks
+        StringBuilder builder = new StringBuilder();
+        for (int i = 1; i <= 20000; i++)
+            builder.append("[INFO] line ").append(i).append('\n');
+        log = builder.toString();
+        archive.write("abc123", log);
+    }
+
+    @Test
+    public void testLineCountAndCompression() throws IOException {
+        assertTrue(archive.exists("abc123"));
+        assertFalse(archive.exists("unknown"));
+        assertEquals(20000, archive.lineCount("abc123"));
+        assertTrue(Files.size(folder.getRoot().toPath().resolve("abc123.log.z")) < log.length() / 4);
+    }
+
+    @Test
+    public void testReadLinesAcrossChunks() throws IOException {
+        assertEquals("[INFO] line 1\n", archive.readLines("abc123", 1, 1));
+        String range = archive.readLines("abc123", 4000, 16000);
+        assertTrue(range.startsWith("[INFO] line 4000\n"));
+        assertTrue(range.endsWith("[INFO] line 16000\n"));
+        assertEquals(12001, range.split("\n").length);
+        assertEquals(log, archive.readLines("abc123", 1, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testTailKeepsWholeLines() throws IOException {
+        String tail = archive.tail("abc123", 100);
+        assertTrue(tail.length() <= 100);
+        assertTrue(tail.endsWith("[INFO] line 20000\n"));
+        assertTrue(tail.startsWith("[INFO] line "));
+        assertTrue(log.endsWith(tail));
+        assertEquals(log, archive.tail("abc123", Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testTailStartingOnLineBoundary() throws IOException {
+        assertEquals("[INFO] line 20000\n", archive.tail("abc123", "[INFO] line 20000\n".length()));
+    }
+
+    @Test
+    public void testOldestLogsDeletedPastLimit() throws IOException {
+        Path root = folder.newFolder("bounded").toPath();
+        new BuildLogArchive(root).write("first", log);
+        long logBytes = Files.size(root.resolve("first.log.z")) + Files.size(root.resolve("first.idx"));
+        Files.setLastModifiedTime(root.resolve("first.log.z"), FileTime.fromMillis(1000));
+
+        var bounded = new BuildLogArchive(root, logBytes * 2 + logBytes / 2);
+        bounded.write("second", log);
+        Files.setLastModifiedTime(root.resolve("second.log.z"), FileTime.fromMillis(2000));
+        assertTrue(bounded.exists("first"));
+        bounded.write("third", log);
+        assertFalse(bounded.exists("first"));
+        assertTrue(bounded.exists("second"));
+        assertEquals(log, bounded.readLines("third", 1, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testInvalidBuildId() {
+        assertThrows(IllegalArgumentException.class, () -> archive.write("../escape", "log"));
+    }
+}
@@ -0,0 +1,202 @@
+package build_management;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class BuildSchedulerTest {
+
+    @Test
+    public void testShortestExpectedBuildFirst() throws Exception {
+        var clock = new AtomicLong();
+        var scheduler = new BuildScheduler<String>(1, 60_000, clock::get);
+        var release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        var blocking = scheduler.submit("blocking", 3000, () -> {
+            release.await();
+            return "blocking";
+        });
+        var slow = scheduler.submit("slow", 10_000, () -> {
+            order.add("slow");
+            return "slow";
+        });
+        var fast = scheduler.submit("fast", 1000, () -> {
+            order.add("fast");
+            return "fast";
+        });
+        assertEquals(2, scheduler.getQueued());
+        assertEquals(1, scheduler.getRunning());
+
+        release.countDown();
+        assertEquals("blocking", blocking.get(5, TimeUnit.SECONDS));
+        assertEquals("slow", slow.get(5, TimeUnit.SECONDS));
+        assertEquals("fast", fast.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("fast", "slow"), order);
+    }
+
+    @Test
+    public void testAgedBuildGoesFirst() throws Exception {
+        var clock = new AtomicLong();
+        var scheduler = new BuildScheduler<String>(1, 10_000, clock::get);
+        var release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        scheduler.submit("blocking", 3000, () -> {
+            release.await();
+            return "blocking";
+        });
+        var slow = scheduler.submit("slow", 10_000, () -> {
+            order.add("slow");
+            return "slow";
+        });
+        clock.set(5000);
+        var fast = scheduler.submit("fast", 1000, () -> {
+            order.add("fast");
+            return "fast";
+        });
+        // The slow build has waited past the aging bound, the fast one has not
+        clock.set(12_000);
+        assertEquals(0, scheduler.estimate("slow").orElseThrow().position());
+
+        release.countDown();
+        slow.get(5, TimeUnit.SECONDS);
+        fast.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("slow", "fast"), order);
+    }
+
+    @Test
+    public void testEstimate() throws Exception {
+        var clock = new AtomicLong();
+        var scheduler = new BuildScheduler<String>(1, 60_000, clock::get);
+        var release = new CountDownLatch(1);
+
+        var blocking = scheduler.submit("blocking", 3000, () -> {
+            release.await();
+            return "blocking";
+        });
+        scheduler.submit("slow", 10_000, () -> "slow");
+        scheduler.submit("fast", 1000, () -> "fast");
+        clock.set(1000);
+
+        var running = scheduler.estimate("blocking").orElseThrow();
+        assertTrue(running.running());
+        assertEquals(2000, running.finishInMillis());
+
+        var fast = scheduler.estimate("fast").orElseThrow();
+        assertFalse(fast.running());
+        assertEquals(0, fast.position());
+        assertEquals(2000, fast.startInMillis());
+        assertEquals(3000, fast.finishInMillis());
+
+        var slow = scheduler.estimate("slow").orElseThrow();
+        assertEquals(1, slow.position());
+        assertEquals(3000, slow.startInMillis());
+        assertEquals(13_000, slow.finishInMillis());
+
+        assertTrue(scheduler.estimate("unknown").isEmpty());
+        release.countDown();
+        blocking.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testRunsUpToConcurrencyLimit() throws Exception {
+        var scheduler = new BuildScheduler<Integer>(2, 60_000, System::currentTimeMillis);
+        var started = new CountDownLatch(2);
+        var release = new CountDownLatch(1);
+
+        for (int i = 0; i < 3; i++) {
+            scheduler.submit("build-" + i, 1000, () -> {
+                started.countDown();
+                release.await();
+                return 0;
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(2, scheduler.getRunning());
+        assertEquals(1, scheduler.getQueued());
+        release.countDown();
+    }
+
+    @Test
+    public void testRaisingConcurrencyStartsQueuedBuilds() throws Exception {
+        var scheduler = new BuildScheduler<Integer>(1, 60_000, System::currentTimeMillis);
+        var started = new CountDownLatch(2);
+        var release = new CountDownLatch(1);
+
+        for (int i = 0; i < 2; i++) {
+            scheduler.submit("build-" + i, 1000, () -> {
+                started.countDown();
+                release.await();
+                return 0;
+            });
+        }
+        assertEquals(1, scheduler.getQueued());
+        scheduler.setConcurrency(2);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.getQueued());
+
+        // Lowering the limit lets the running builds finish
+        scheduler.setConcurrency(1);
+        assertEquals(2, scheduler.getRunning());
+        release.countDown();
+    }
+
+    @Test
+    public void testRaisingConcurrencyFillsEveryFreeSlot() throws Exception {
+        var scheduler = new BuildScheduler<Integer>(1, 60_000, System::currentTimeMillis);
+        var started = new CountDownLatch(5);
+        var release = new CountDownLatch(1);
+
+        for (int i = 0; i < 5; i++) {
+            scheduler.submit("build-" + i, 1000, () -> {
+                started.countDown();
+                release.await();
+                return 0;
+            });
+        }
+        assertEquals(4, scheduler.getQueued());
+        scheduler.setConcurrency(5);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.getQueued());
+        assertEquals(5, scheduler.getRunning());
+        release.countDown();
+    }
+
+    @Test
+    public void testDurationModelPrediction() {
+        var model = new BuildDurationModel(0.5, 120_000);
+        assertEquals(120_000, model.predict("repo", "main"));
+
+        model.record("repo", "main", Map.of("compile", 2000L, "test", 4000L));
+        assertEquals(6000, model.predict("repo", "main"));
+
+        model.record("repo", "main", Map.of("compile", 2000L, "test", 8000L));
+        assertEquals(8000, model.predict("repo", "main"));
+
+        // A new branch is predicted from the other branches of the repository
+        assertEquals(8000, model.predict("repo", "feature"));
+    }
+
+    @Test
+    public void testDurationModelSkippedPhaseCountsAsZero() {
+        var model = new BuildDurationModel(0.5, 120_000);
+        model.record("repo", "main", Map.of("test", 4000L));
+        model.record("repo", "main", Map.of("test", 4000L, "rerun", 4000L));
+        assertEquals(6000, model.predict("repo", "main"));
+
+        // Builds without reruns make the rerun of an earlier build fade out
+        model.record("repo", "main", Map.of("test", 4000L));
+        assertEquals(5000, model.predict("repo", "main"));
+        for (int i = 0; i < 20; i++)
+            model.record("repo", "main", Map.of("test", 4000L));
+        assertEquals(4000, model.predict("repo", "main"));
+    }
+}
@@ -0,0 +1,61 @@
+package build_management;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ConcurrencyLimiterTest {
+
+    private static final ConcurrencyLimiter.HostLoad IDLE = new ConcurrencyLimiter.HostLoad(0.2, 0.8);
+
+    @Test
+    public void testAdditiveIncreaseOnlyWhenSaturated() {
+        var limiter = new ConcurrencyLimiter(2, 1, 4, 1.0, 0.1, 1.5, 0.5, 60_000, () -> IDLE, () -> 0);
+
+        // Nothing waiting, the limit is not tested so it does not grow
+        assertEquals(2, limiter.adjust(0, 1));
+        assertEquals(3, limiter.adjust(5, 2));
+        assertEquals(4, limiter.adjust(5, 3));
+        assertEquals(4, limiter.adjust(5, 4));
+    }
+
+    @Test
+    public void testMultiplicativeDecreaseWithCooldown() {
+        var clock = new AtomicLong();
+        var load = new AtomicReference<>(new ConcurrencyLimiter.HostLoad(2.5, 0.8));
+        var limiter = new ConcurrencyLimiter(8, 2, 8, 1.0, 0.1, 1.5, 0.5, 60_000, load::get, clock::get);
+
+        assertEquals(4, limiter.adjust(3, 8));
+        clock.addAndGet(10_000);
+        assertEquals(4, limiter.adjust(3, 8));
+        clock.addAndGet(60_000);
+        assertEquals(2, limiter.adjust(3, 4));
+        clock.addAndGet(60_000);
+        assertEquals(2, limiter.adjust(3, 2));
+
+        // Low memory is congestion as well
+        load.set(new ConcurrencyLimiter.HostLoad(0.2, 0.05));
+        assertEquals(2, limiter.adjust(3, 2));
+        load.set(IDLE);
+        assertEquals(3, limiter.adjust(3, 2));
+
+        StringBuilder metrics = new StringBuilder();
+        limiter.appendPrometheus(metrics);
+        assertTrue(metrics.toString().contains("ci_build_concurrency_limit 3"));
+        assertTrue(metrics.toString().contains("ci_concurrency_adjustments_total{direction=\"decrease\"} 2"));
+    }
+
+    @Test
+    public void testLatencyInflationDecreasesLimit() {
+        var limiter = new ConcurrencyLimiter(4, 1, 8, 1.0, 0.1, 1.5, 0.5, 60_000, () -> IDLE, () -> 0);
+        limiter.recordLatency(10_000, 11_000);
+        assertEquals(5, limiter.adjust(1, 4));
+
+        for (int i = 0; i < 5; i++)
+            limiter.recordLatency(10_000, 30_000);
+        assertEquals(2, limiter.adjust(1, 5));
+    }
+}
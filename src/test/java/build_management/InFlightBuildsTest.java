@@ -0,0 +1,81 @@
+package build_management;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class InFlightBuildsTest {
+
+    @Test
+    public void testDuplicateAttachesToRunningBuild() {
+        var builds = new InFlightBuilds<String, String>();
+        var queued = new CompletableFuture<String>();
+        var runs = new AtomicInteger();
+
+        var leader = builds.runAsync("repo@abc", () -> {
+            runs.incrementAndGet();
+            return queued;
+        });
+        assertTrue(leader.leader());
+        assertTrue(builds.isInFlight("repo@abc"));
+
+        var duplicate = builds.runAsync("repo@abc", () -> {
+            runs.incrementAndGet();
+            return CompletableFuture.completedFuture("duplicate");
+        });
+        assertFalse(duplicate.leader());
+        assertFalse(duplicate.result().isDone());
+
+        queued.complete("done");
+        assertEquals("done", duplicate.result().join());
+        assertEquals(1, runs.get());
+        assertEquals(0, builds.size());
+    }
+
+    @Test
+    public void testSequentialBuildsRunAgain() {
+        var builds = new InFlightBuilds<String, Integer>();
+        var runs = new AtomicInteger();
+        assertTrue(builds.runAsync("repo@abc",
+                () -> CompletableFuture.completedFuture(runs.incrementAndGet())).leader());
+        var second = builds.runAsync("repo@abc", () -> CompletableFuture.completedFuture(runs.incrementAndGet()));
+        assertTrue(second.leader());
+        assertEquals(Integer.valueOf(2), second.result().join());
+    }
+
+    @Test
+    public void testFailureIsShared() {
+        var builds = new InFlightBuilds<String, String>();
+        var flight = builds.runAsync("repo@abc", () -> {
+            throw new IllegalStateException("queue full");
+        });
+        assertTrue(flight.result().isCompletedExceptionally());
+        assertThrows(CompletionException.class, () -> flight.result().join());
+        assertFalse(builds.isInFlight("repo@abc"));
+
+        var failed = builds.runAsync("repo@abc",
+                () -> CompletableFuture.failedFuture(new IllegalStateException("clone failed")));
+        assertThrows(CompletionException.class, () -> failed.result().join());
+        assertFalse(builds.isInFlight("repo@abc"));
+    }
+
+    @Test
+    public void testAsyncBuildStaysInFlightUntilCompleted() {
+        var builds = new InFlightBuilds<String, String>();
+        var queued = new CompletableFuture<String>();
+        var first = builds.runAsync("repo@abc", () -> queued);
+        assertTrue(first.leader());
+        assertTrue(builds.isInFlight("repo@abc"));
+
+        var duplicate = builds.runAsync("repo@abc", () -> CompletableFuture.completedFuture("duplicate"));
+        assertFalse(duplicate.leader());
+
+        queued.complete("done");
+        assertEquals("done", duplicate.result().join());
+        assertFalse(builds.isInFlight("repo@abc"));
+    }
+}
@@ -0,0 +1,108 @@
+package build_management;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+public class JobJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testUnfinishedJobsAreRecovered() throws Exception {
+        Path root = folder.getRoot().toPath();
+        String accepted;
+        String running;
+        try (var journal = new JobJournal(root, 1000)) {
+            assertTrue(journal.getRecoveredJobs().isEmpty());
+            accepted = journal.accepted("{\"job\":1}");
+            running = journal.accepted("{\"job\":2}");
+            String done = journal.accepted("{\"job\":3}");
+            String failed = journal.accepted("{\"job\":4}");
+            journal.running(running);
+            journal.running(done);
+            journal.finished(done, true);
+            journal.finished(failed, false);
+            assertEquals(2, journal.getUnfinishedCount());
+        }
+
+        try (var journal = new JobJournal(root, 1000)) {
+            var jobs = journal.getRecoveredJobs();
+            assertEquals(2, jobs.size());
+            assertEquals(accepted, jobs.get(0).id());
+            assertEquals("ACCEPTED", jobs.get(0).state());
+            assertEquals("{\"job\":1}", jobs.get(0).payload());
+            assertEquals(running, jobs.get(1).id());
+            assertEquals("RUNNING", jobs.get(1).state());
+        }
+    }
+
+    @Test
+    public void testCompactionKeepsOnlyUnfinishedJobs() throws Exception {
+        Path root = folder.getRoot().toPath();
+        String pending;
+        try (var journal = new JobJournal(root, 10)) {
+            pending = journal.accepted("{\"job\":\"pending\"}");
+            for (int i = 0; i < 50; i++) {
+                String id = journal.accepted("{\"job\":" + i + "}");
+                journal.finished(id, true);
+            }
+        }
+        assertTrue(Files.readAllLines(root.resolve("jobs.journal")).size() < 10);
+
+        try (var journal = new JobJournal(root, 10)) {
+            assertEquals(1, journal.getRecoveredJobs().size());
+            assertEquals(pending, journal.getRecoveredJobs().get(0).id());
+        }
+    }
+
+    @Test
+    public void testJobGivenUpAfterMaxAttempts() throws Exception {
+        Path root = folder.getRoot().toPath();
+        String crashing;
+        try (var journal = new JobJournal(root, 1000, 2)) {
+            crashing = journal.accepted("{\"job\":\"crash\"}");
+            journal.running(crashing);
+        }
+        // The attempt count survives a compaction
+        try (var journal = new JobJournal(root, 1, 2)) {
+            assertEquals(1, journal.getRecoveredJobs().get(0).attempts());
+            journal.running(crashing);
+        }
+        try (var journal = new JobJournal(root, 1000, 2)) {
+            assertTrue(journal.getRecoveredJobs().isEmpty());
+            assertEquals(crashing, journal.getAbandonedJobs().get(0).id());
+            assertEquals(2, journal.getAbandonedJobs().get(0).attempts());
+        }
+        try (var journal = new JobJournal(root, 1000, 2)) {
+            assertTrue(journal.getRecoveredJobs().isEmpty());
+            assertTrue(journal.getAbandonedJobs().isEmpty());
+        }
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws Exception {
+        Path root = folder.getRoot().toPath();
+        try (var journal = new JobJournal(root, 1000)) {
+            journal.accepted("{\"job\":1}");
+        }
+        Files.writeString(root.resolve("jobs.journal"), "{\"op\":\"DONE\",\"i", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        try (var journal = new JobJournal(root, 1000)) {
+            assertEquals(1, journal.getRecoveredJobs().size());
+            journal.accepted("{\"job\":2}");
+        }
+        try (var journal = new JobJournal(root, 1000)) {
+            assertEquals(2, journal.getRecoveredJobs().size());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package build_management;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PathFilterTest {
+
+    private static final String REPO = "https://github.com/org/repo";
+
+    @Test
+    public void testRulesOfRepository() {
+        var filter = new PathFilter("*=*.md, docs/**;" + REPO + "=site/**,!site/pom.xml");
+
+        // A glob without '/' matches the file name in any folder
+        assertTrue(filter.isIgnored(REPO, "README.md"));
+        assertTrue(filter.isIgnored(REPO, "module/CHANGELOG.md"));
+        assertTrue(filter.isIgnored(REPO, "docs/img/logo.png"));
+        assertFalse(filter.isIgnored(REPO, "src/main/java/App.java"));
+        // The last matching rule wins
+        assertTrue(filter.isIgnored(REPO, "site/index.html"));
+        assertFalse(filter.isIgnored(REPO, "site/pom.xml"));
+        // The rules of a repository do not apply to the others
+        assertFalse(filter.isIgnored("https://github.com/org/other", "site/index.html"));
+    }
+
+    @Test
+    public void testOnlyIgnored() {
+        var filter = new PathFilter(REPO + "=*.md");
+        assertTrue(filter.hasRules(REPO));
+        assertTrue(filter.onlyIgnored(REPO, List.of("README.md", "docs/guide.md")));
+        assertFalse(filter.onlyIgnored(REPO, List.of("README.md", "pom.xml")));
+
+        // Without rules every change is built
+        assertFalse(filter.hasRules("https://github.com/org/other"));
+        assertFalse(filter.onlyIgnored("https://github.com/org/other", List.of("README.md")));
+        assertFalse(new PathFilter("").onlyIgnored(REPO, List.of()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRules() {
+        new PathFilter("*.md");
+    }
+}
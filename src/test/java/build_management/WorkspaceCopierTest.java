@@ -0,0 +1,43 @@
+package build_management;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class WorkspaceCopierTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testCopyLinksSourcesAndSkipsOutputs() throws Exception {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Files.createDirectories(source.resolve("src/main/java"));
+        Files.createDirectories(source.resolve("target/classes"));
+        Files.createDirectories(source.resolve(".git"));
+        Files.writeString(source.resolve("pom.xml"), "<project/>");
+        Files.writeString(source.resolve("src/main/java/App.java"), "class App {}");
+        Files.writeString(source.resolve("target/classes/App.class"), "binary");
+        Files.writeString(source.resolve(".git/HEAD"), "ref: refs/heads/main");
+        // Only the target folders of maven modules are build outputs
+        Files.createDirectories(source.resolve("src/main/java/target"));
+        Files.writeString(source.resolve("src/main/java/target/Target.java"), "class Target {}");
+
+        Path copy = temporaryFolder.getRoot().toPath().resolve("copy");
+        assertEquals(0, WorkspaceCopier.copy(source, copy));
+        assertTrue(Files.isSameFile(source.resolve("pom.xml"), copy.resolve("pom.xml")));
+        assertEquals("class App {}", Files.readString(copy.resolve("src/main/java/App.java")));
+        assertTrue(Files.exists(copy.resolve("src/main/java/target/Target.java")));
+        assertFalse(Files.exists(copy.resolve("target")));
+        assertFalse(Files.exists(copy.resolve(".git")));
+
+        WorkspaceCopier.delete(copy);
+        assertFalse(Files.exists(copy));
+        assertEquals("class App {}", Files.readString(source.resolve("src/main/java/App.java")));
+    }
+}
@@ -0,0 +1,97 @@
+package build_management;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class WorkspacePolicyTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSpillsToDiskOverBudget() throws Exception {
+        Path memory = temporaryFolder.newFolder("memory").toPath();
+        Path disk = temporaryFolder.newFolder("disk").toPath();
+        var policy = new WorkspacePolicy(memory, disk, 100, 60);
+
+        var first = policy.reserve("repo");
+        assertEquals(WorkspacePolicy.Tier.MEMORY, first.tier());
+        assertEquals(memory, first.root());
+        var second = policy.reserve("repo");
+        assertEquals(WorkspacePolicy.Tier.DISK, second.tier());
+        assertEquals(disk, second.root());
+        assertEquals(60, policy.getMemoryReservedBytes());
+
+        // The measured size replaces the default estimate of the repository
+        policy.release(first, 40);
+        policy.release(second, 40);
+        assertEquals(0, policy.getMemoryReservedBytes());
+        assertEquals(WorkspacePolicy.Tier.MEMORY, policy.reserve("repo").tier());
+        assertEquals(WorkspacePolicy.Tier.MEMORY, policy.reserve("repo").tier());
+        assertEquals(WorkspacePolicy.Tier.DISK, policy.reserve("repo").tier());
+
+        assertEquals(3, policy.getPlacements(WorkspacePolicy.Tier.MEMORY));
+        assertEquals(2, policy.getPlacements(WorkspacePolicy.Tier.DISK));
+        StringBuilder metrics = new StringBuilder();
+        policy.appendPrometheus(metrics);
+        assertTrue(metrics.toString().contains("ci_workspaces_total{tier=\"memory\"} 3"));
+    }
+
+    @Test
+    public void testMemoryTierDisabled() throws Exception {
+        Path disk = temporaryFolder.newFolder("disk").toPath();
+        var policy = new WorkspacePolicy(null, disk, 1L << 30, 1);
+        assertEquals(WorkspacePolicy.Tier.DISK, policy.reserve("repo").tier());
+    }
+
+    @Test
+    public void testSizeOf() throws Exception {
+        Path workspace = temporaryFolder.newFolder("workspace").toPath();
+        Files.createDirectories(workspace.resolve("target/classes"));
+        Files.write(workspace.resolve("pom.xml"), new byte[100]);
+        Files.write(workspace.resolve("target/classes/A.class"), new byte[50]);
+        assertEquals(150, WorkspacePolicy.sizeOf(workspace));
+    }
+
+    @Test
+    public void testCopiesStayOnTheTierOfTheirCheckout() throws Exception {
+        Path memory = temporaryFolder.newFolder("memory").toPath();
+        Path disk = temporaryFolder.newFolder("disk").toPath();
+        var policy = new WorkspacePolicy(memory, disk, 100, 60);
+
+        var checkout = policy.reserve("repo");
+        var copy = policy.reserveCopy(checkout);
+        assertEquals(WorkspacePolicy.Tier.MEMORY, copy.tier());
+        assertEquals(memory, copy.root());
+        assertEquals(60, policy.getMemoryReservedBytes());
+
+        // The outputs of the copy are reserved for the next copies and push them to disk once over budget
+        policy.releaseCopy(copy, 30);
+        assertEquals(30, policy.reserveCopy(checkout).reservedBytes());
+        var overBudget = policy.reserveCopy(checkout);
+        assertEquals(WorkspacePolicy.Tier.DISK, overBudget.tier());
+        assertEquals(disk, overBudget.root());
+
+        var diskCheckout = policy.reserve("repo");
+        assertEquals(WorkspacePolicy.Tier.DISK, diskCheckout.tier());
+        assertEquals(disk, policy.reserveCopy(diskCheckout).root());
+    }
+
+    @Test
+    public void testUnsharedSizeOfSkipsLinkedFiles() throws Exception {
+        Path checkout = temporaryFolder.newFolder("checkout").toPath();
+        Files.write(checkout.resolve("pom.xml"), new byte[100]);
+        Path copy = temporaryFolder.getRoot().toPath().resolve("copy");
+        WorkspaceCopier.copy(checkout, copy);
+        Files.createDirectories(copy.resolve("target"));
+        Files.write(copy.resolve("target/A.class"), new byte[50]);
+        assertEquals(150, WorkspacePolicy.sizeOf(copy));
+        assertEquals(50, WorkspacePolicy.unsharedSizeOf(copy));
+    }
+}
@@ -1,7 +1,9 @@
 package code_verification;
 
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
 
@@ -10,8 +12,15 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.junit.Assert.*;
 
@@ -26,6 +35,9 @@ public class CodeVerifierTest {
     private static final String TEST_PROJECT_FOLDER = TESTED_PROJECT_BASE_PATH + "test-LaunchInterceptor";
     private DocumentBuilder documentBuilder;
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     /**
      * This method is run before each test
      */
@@ -149,6 +161,263 @@ public class CodeVerifierTest {
         assertTrue(Objects.nonNull(cVerifier.getTestXml()));
     }
 
+    @Test
+    public void testDaemonExecutorFallsBackToForked() {
+        var cVerifier = new CodeVerifier(TEST_PROJECT_FOLDER, new DaemonMavenExecutor("not-an-mvnd-executable"));
+        try {
+            assertTrue(cVerifier.verifyCompilation());
+        } catch (Exception e) {
+            fail("Caught exception: " + e + "\n\t" + e.getMessage());
+        }
+        var timings = cVerifier.getPhaseTimings();
+        assertEquals(1, timings.size());
+        assertEquals("compile", timings.get(0).phase());
+        assertEquals("forked", timings.get(0).executor());
+        assertTrue(timings.get(0).bootstrapMillis() <= timings.get(0).totalMillis());
+        assertEquals(1, cVerifier.getResourceUsage().size());
+        assertTrue(cVerifier.getResourceUsage().get(0).wallMillis() > 0);
+    }
+
+    @Test
+    public void testDaemonFallbackKeepsJdkOfMatrixEntry() throws Exception {
+        // A JDK matrix entry whose JAVA_HOME is invalid must fail even when mvnd cannot start
+        var cVerifier = new CodeVerifier(TEST_PROJECT_FOLDER,
+                new DaemonMavenExecutor("not-an-mvnd-executable", Map.of("JAVA_HOME", "/no/such/jdk")));
+        assertFalse(cVerifier.verifyCompilation());
+        assertTrue(cVerifier.getCompilationOutput(), cVerifier.getCompilationOutput().contains("JAVA_HOME"));
+        assertEquals("forked", cVerifier.getPhaseTimings().get(0).executor());
+    }
+
+    @Test
+    public void testForkedExecutorUsesGivenJdk() throws Exception {
+        String javaHome = System.getProperty("java.home");
+        var executor = new ForkedMavenExecutor(Map.of("JAVA_HOME", javaHome));
+        Process process = executor.start(new File(TEST_PROJECT_FOLDER), "-v");
+        String output = new String(process.getInputStream().readAllBytes());
+        assertEquals(0, process.waitFor());
+        assertTrue(output, output.contains("Java version: " + System.getProperty("java.version")));
+        assertTrue(output, output.contains("runtime: " + javaHome));
+    }
+
+    @Test
+    public void testRunTestsFailFastTriggersOnce() {
+        var cVerifier = new CodeVerifier(TEST_PROJECT_FOLDER + "TestFail");
+        List<String> reasons = new CopyOnWriteArrayList<>();
+        var monitor = new FailFastMonitor(reasons::add, true);
+        cVerifier.setFailFastMonitor(monitor);
+        try {
+            assertFalse(cVerifier.runTests());
+        } catch (Exception e) {
+            fail("Caught exception: " + e + "\n\t" + e.getMessage());
+        }
+        assertEquals(1, reasons.size());
+        assertTrue(monitor.hasStopped());
+        assertDoesNotThrow(cVerifier::getTestXml);
+    }
+
+    @Test
+    public void testRunTestsFailFastSilentOnSuccess() {
+        var cVerifier = new CodeVerifier(TEST_PROJECT_FOLDER);
+        List<String> reasons = new CopyOnWriteArrayList<>();
+        var monitor = new FailFastMonitor(reasons::add, false);
+        cVerifier.setFailFastMonitor(monitor);
+        try {
+            assertTrue(cVerifier.runTests());
+        } catch (Exception e) {
+            fail("Caught exception: " + e + "\n\t" + e.getMessage());
+        }
+        assertTrue(reasons.isEmpty());
+        assertFalse(monitor.hasTriggered());
+    }
+
+    /**
+     * Builds the POM of a test project compiled for Java 21 and tested with JUnit 4 and surefire 2.12.4
+     *
+     * @param groupId    the group of the project
+     * @param artifactId the artifact of the project
+     * @param extra      the elements inserted after the version, e.g. the packaging and modules of a reactor
+     */
+    private static String projectPom(String groupId, String artifactId, String extra) {
+        return """
+                <project xmlns="http://maven.apache.org/POM/4.0.0">
+                    <modelVersion>4.0.0</modelVersion>
+                    <groupId>%s</groupId>
+                    <artifactId>%s</artifactId>
+                    <version>1.0</version>
+                %s    <properties>
+                        <maven.compiler.source>21</maven.compiler.source>
+                        <maven.compiler.target>21</maven.compiler.target>
+                        <project.build.sourceEncoding>UTF-8</project.build.sourceEncoding>
+                    </properties>
+                    <dependencies>
+                        <dependency>
+                            <groupId>junit</groupId>
+                            <artifactId>junit</artifactId>
+                            <version>4.13.1</version>
+                            <scope>test</scope>
+                        </dependency>
+                    </dependencies>
+                    <build>
+                        <plugins>
+                            <plugin>
+                                <groupId>org.apache.maven.plugins</groupId>
+                                <artifactId>maven-surefire-plugin</artifactId>
+                                <version>2.12.4</version>
+                            </plugin>
+                        </plugins>
+                    </build>
+                </project>
+                """.formatted(groupId, artifactId, extra);
+    }
+
+    /**
+     * Creates a reactor with a module "core" and a nested module "services/api", built in this order, each with one
+     * test that fails in the given module and passes in the other one
+     */
+    private String createMultiModuleProject(String failingModule) throws IOException {
+        Path root = temporaryFolder.newFolder("reactor").toPath();
+        Files.writeString(root.resolve("pom.xml"), projectPom("reactor", "parent", """
+                    <packaging>pom</packaging>
+                    <modules>
+                        <module>core</module>
+                        <module>services</module>
+                    </modules>
+                """));
+        Files.createDirectories(root.resolve("services"));
+        Files.writeString(root.resolve("services/pom.xml"), """
+                <project xmlns="http://maven.apache.org/POM/4.0.0">
+                    <modelVersion>4.0.0</modelVersion>
+                    <parent><groupId>reactor</groupId><artifactId>parent</artifactId><version>1.0</version></parent>
+                    <artifactId>services</artifactId>
+                    <packaging>pom</packaging>
+                    <modules>
+                        <module>api</module>
+                    </modules>
+                </project>
+                """);
+        for (String module : List.of("core", "services/api")) {
+            String name = module.replace("services/", "");
+            Path testFolder = root.resolve(module).resolve("src/test/java");
+            Files.createDirectories(testFolder);
+            Files.writeString(root.resolve(module).resolve("pom.xml"), """
+                    <project xmlns="http://maven.apache.org/POM/4.0.0">
+                        <modelVersion>4.0.0</modelVersion>
+                        <parent>
+                            <groupId>reactor</groupId><artifactId>%s</artifactId><version>1.0</version>
+                            <relativePath>../pom.xml</relativePath>
+                        </parent>
+                        <artifactId>%s</artifactId>
+                    </project>
+                    """.formatted(module.equals("core") ? "parent" : "services", name));
+            String testClass = name.substring(0, 1).toUpperCase() + name.substring(1) + "Test";
+            Files.writeString(testFolder.resolve(testClass + ".java"), """
+                    public class %s {
+                        @org.junit.Test
+                        public void testModule() {
+                            org.junit.Assert.assertTrue(%s);
+                        }
+                    }
+                    """.formatted(testClass, !module.equals(failingModule)));
+        }
+        return root.toString();
+    }
+
+    @Test
+    public void testReadModules() throws IOException {
+        assertEquals(List.of("core", "services", "services/api"),
+                new CodeVerifier(createMultiModuleProject("services/api")).getModules());
+        assertTrue(new CodeVerifier(TEST_PROJECT_FOLDER).getModules().isEmpty());
+    }
+
+    @Test
+    public void testRunTestsPerModule() throws IOException {
+        var cVerifier = new CodeVerifier(createMultiModuleProject("services/api"));
+        cVerifier.setModuleThreads("2");
+        try {
+            assertFalse(cVerifier.runTests());
+        } catch (Exception e) {
+            fail("Caught exception: " + e + "\n\t" + e.getMessage());
+        }
+        var byModule = cVerifier.getTestXmlByModule();
+        assertEquals(1, byModule.get("core").size());
+        assertEquals(1, byModule.get("services/api").size());
+        assertFalse(TestCaseResult.fromReports(byModule.get("core")).get(0).failed());
+        assertTrue(TestCaseResult.fromReports(byModule.get("services/api")).get(0).failed());
+        assertEquals(2, cVerifier.getTestXml().size());
+    }
+
+    @Test
+    public void testModulesAfterFailingOneStillReport() throws Exception {
+        var cVerifier = new CodeVerifier(createMultiModuleProject("core"));
+        // One thread builds the modules in reactor order, "services/api" is built after "core" has failed
+        cVerifier.setModuleThreads("1");
+        assertFalse(cVerifier.runTests());
+        var byModule = cVerifier.getTestXmlByModule();
+        assertTrue(TestCaseResult.fromReports(byModule.get("core")).get(0).failed());
+        assertEquals(1, byModule.get("services/api").size());
+        assertFalse(TestCaseResult.fromReports(byModule.get("services/api")).get(0).failed());
+    }
+
+    @Test
+    public void testRerunFailedTests() throws Exception {
+        var cVerifier = new CodeVerifier(createFlakyProject());
+        assertFalse(cVerifier.runTests());
+        var reruns = cVerifier.rerunFailedTests(2);
+
+        assertEquals(List.of(new TestRerun("FlakyTest#broken", 2, false), new TestRerun("FlakyTest#flaky", 1, true)),
+                reruns.stream().sorted(Comparator.comparing(TestRerun::id)).toList());
+        assertFalse(cVerifier.getRerunOutput().isBlank());
+        // Only the test run and the two reruns, nothing is compiled again
+        assertEquals(List.of("test", "rerun", "rerun"),
+                cVerifier.getPhaseTimings().stream().map(PhaseTiming::phase).toList());
+    }
+
+    @Test
+    public void testRerunFailedTestsWithoutFailures() throws Exception {
+        var cVerifier = new CodeVerifier(TEST_PROJECT_FOLDER);
+        assertTrue(cVerifier.runTests());
+        assertTrue(cVerifier.rerunFailedTests(2).isEmpty());
+        assertEquals(1, cVerifier.getPhaseTimings().size());
+    }
+
+    @Test
+    public void testRunSelectedTests() throws Exception {
+        var cVerifier = new CodeVerifier(createFlakyProject());
+        assertTrue(cVerifier.runTests(Set.of("FlakyTest#passing")));
+        assertEquals(List.of("FlakyTest#passing"),
+                TestCaseResult.fromReports(cVerifier.getTestXml()).stream().map(TestCaseResult::id).toList());
+    }
+
+    // Project whose "flaky" test fails the first time it runs only, and whose "broken" test always fails
+    private String createFlakyProject() throws IOException {
+        Path root = temporaryFolder.newFolder("flaky").toPath();
+        Files.writeString(root.resolve("pom.xml"), projectPom("flaky", "flaky", ""));
+        Path testFolder = root.resolve("src/test/java");
+        Files.createDirectories(testFolder);
+        Files.writeString(testFolder.resolve("FlakyTest.java"), """
+                import org.junit.Test;
+                import java.io.File;
+                import static org.junit.Assert.*;
+
+                public class FlakyTest {
+                    @Test
+                    public void passing() {
+                    }
+
+                    @Test
+                    public void flaky() throws Exception {
+                        assertFalse(new File("target/flaky-marker").createNewFile());
+                    }
+
+                    @Test
+                    public void broken() {
+                        fail("always fails");
+                    }
+                }
+                """);
+        return root.toString();
+    }
+
     private void assertDoesNotThrow(Runnable runnable) {
         try {
             runnable.run();
@@ -0,0 +1,52 @@
+package code_verification;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FailFastMonitorTest {
+
+    private static List<String> reasonsFor(String... lines) {
+        List<String> reasons = new ArrayList<>();
+        var monitor = new FailFastMonitor(reasons::add, false);
+        for (String line : lines)
+            monitor.onLine(line);
+        return reasons;
+    }
+
+    @Test
+    public void testFailedTestLineOfSurefire2() {
+        assertEquals(List.of("Test failure: testFail(dd2480.AppTest)"),
+                reasonsFor("Running dd2480.AppTest",
+                        "testFail(dd2480.AppTest)  Time elapsed: 0.005 sec  <<< FAILURE!"));
+        assertEquals(List.of("Test error: testFail(dd2480.AppTest)"),
+                reasonsFor("[ERROR] testFail(dd2480.AppTest)  Time elapsed: 0.005 s  <<< ERROR!"));
+    }
+
+    @Test
+    public void testFailedTestLineOfSurefire3() {
+        assertEquals(List.of("Test failure: dd2480.AppTest.testFail"),
+                reasonsFor("[INFO] Running dd2480.AppTest",
+                        "[ERROR] dd2480.AppTest.testFail -- Time elapsed: 0.012 s <<< FAILURE!"));
+    }
+
+    @Test
+    public void testPassingRunDoesNotTrigger() {
+        assertEquals(List.of(), reasonsFor(
+                "[INFO] Tests run: 3, Failures: 0, Errors: 0, Skipped: 0, Time elapsed: 0.03 s -- in dd2480.AppTest",
+                "[INFO] BUILD SUCCESS"));
+    }
+
+    @Test
+    public void testClassSummaryTriggersOnce() {
+        var reasons = reasonsFor(
+                "[ERROR] Tests run: 2, Failures: 1, Errors: 0, Skipped: 0, Time elapsed: 0.03 s <<< FAILURE! "
+                        + "-- in dd2480.AppTest",
+                "[ERROR] dd2480.AppTest.testFail -- Time elapsed: 0.012 s <<< FAILURE!");
+        assertEquals(1, reasons.size());
+        assertTrue(reasons.get(0), reasons.get(0).startsWith("Test failures: "));
+    }
+}
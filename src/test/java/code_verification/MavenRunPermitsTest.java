@@ -0,0 +1,80 @@
+package code_verification;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MavenRunPermitsTest {
+
+    @Test
+    public void testWaitsForFreePermit() throws Exception {
+        var permits = new MavenRunPermits(1);
+        permits.acquire();
+        var acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                permits.acquire();
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, permits.getWaiting());
+
+        permits.release();
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        waiter.join();
+        assertEquals(1, permits.getActive());
+        assertEquals(0, permits.getWaiting());
+    }
+
+    @Test
+    public void testRaisingLimitWakesWaiters() throws Exception {
+        var permits = new MavenRunPermits(1);
+        permits.acquire();
+        var acquired = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            new Thread(() -> {
+                try {
+                    permits.acquire();
+                    acquired.countDown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }).start();
+        }
+        permits.setLimit(3);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        assertEquals(3, permits.getActive());
+
+        // Lowering the limit lets the running processes finish
+        permits.setLimit(1);
+        assertEquals(3, permits.getActive());
+        StringBuilder metrics = new StringBuilder();
+        permits.appendPrometheus(metrics);
+        assertTrue(metrics.toString().contains("ci_maven_runs_active 3"));
+    }
+
+    @Test
+    public void testVerifierReleasesPermit() throws Exception {
+        var permits = new MavenRunPermits(1);
+        var verifier = new CodeVerifier(System.getProperty("user.dir"), new ForkedMavenExecutor() {
+            // Stands for maven, the permit must be held while it runs
+            @Override
+            public Process start(File projectFolder, String goals) throws IOException {
+                assertEquals(1, permits.getActive());
+                return new ProcessBuilder("true").start();
+            }
+        });
+        verifier.setRunPermits(permits);
+        assertTrue(verifier.verifyCompilation());
+        assertEquals(0, permits.getActive());
+    }
+}
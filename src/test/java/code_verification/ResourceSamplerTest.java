@@ -0,0 +1,58 @@
+package code_verification;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class ResourceSamplerTest {
+
+    @Test
+    public void testSamplesBusyProcessTree() throws Exception {
+        assumeTrue("Requires /proc", Files.exists(Path.of("/proc/self/stat")));
+        // A shell waiting for a child shell spinning for one to two seconds
+        Process process = new ProcessBuilder("sh", "-c",
+                "sh -c 'end=$(($(date +%s) + 2)); while [ $(date +%s) -lt $end ]; do :; done'").start();
+        var sampler = new ResourceSampler(process, 50);
+        assertEquals(0, process.waitFor());
+
+        var usage = sampler.finish("test", Duration.ofSeconds(2));
+        assertEquals("test", usage.phase());
+        assertTrue("CPU time should be sampled", usage.cpuMillis() > 0);
+        assertTrue("Memory should be sampled", usage.peakRssKb() > 0);
+        assertTrue("Both shells should be seen", usage.peakThreads() >= 2);
+        assertEquals(2000, usage.wallMillis());
+    }
+
+    @Test
+    public void testCountsChildrenExitedBetweenSamples() throws Exception {
+        assumeTrue("Requires /proc", Files.exists(Path.of("/proc/self/stat")));
+        // A child shell spinning for one to two seconds exits before the second sample, its parent still sleeps
+        Process process = new ProcessBuilder("sh", "-c",
+                "sh -c 'end=$(($(date +%s) + 2)); while [ $(date +%s) -lt $end ]; do :; done'; sleep 3").start();
+        var sampler = new ResourceSampler(process, 2500);
+        assertEquals(0, process.waitFor());
+
+        var usage = sampler.finish("test", Duration.ofSeconds(4));
+        assertTrue("The CPU time of the exited child should be counted, got " + usage.cpuMillis(),
+                usage.cpuMillis() >= 500);
+    }
+
+    @Test
+    public void testKeepsChildrenSampledBeforeRootExited() throws Exception {
+        assumeTrue("Requires /proc", Files.exists(Path.of("/proc/self/stat")));
+        Process process = new ProcessBuilder("sh", "-c",
+                "sh -c 'end=$(($(date +%s) + 2)); while [ $(date +%s) -lt $end ]; do :; done'").start();
+        var sampler = new ResourceSampler(process, 50);
+        assertEquals(0, process.waitFor());
+        // A sample taken after the exit of the root, before finish() stops the sampling thread
+        sampler.sample();
+
+        var usage = sampler.finish("test", Duration.ofSeconds(2));
+        assertTrue("The CPU time of the child should be kept, got " + usage.cpuMillis(), usage.cpuMillis() >= 500);
+    }
+}
@@ -0,0 +1,93 @@
+package code_verification;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TestDurationHistoryTest {
+
+    private static final String REPO = "https://github.com/DD2480-Group-27/LaunchInterceptor";
+    private TestDurationHistory history;
+
+    @Before
+    public void setUp() {
+        history = new TestDurationHistory(5, 3, 0.5, 0.05);
+    }
+
+    private List<TestDurationHistory.DurationStat> recordBuild(double fastTime, double slowTime) {
+        return history.record(REPO, "main", List.of(
+                new TestCaseResult("LaunchInterceptorTest", "testFast", fastTime, false),
+                new TestCaseResult("LaunchInterceptorTest", "testSlow", slowTime, false)
+        ));
+    }
+
+    @Test
+    public void testNoRegressionWithoutBaseline() {
+        assertTrue(recordBuild(0.1, 1.0).isEmpty());
+        assertTrue(recordBuild(0.1, 5.0).isEmpty());
+    }
+
+    @Test
+    public void testRegressionFlagged() {
+        for (int i = 0; i < 3; i++)
+            assertTrue(recordBuild(0.1, 1.0).isEmpty());
+
+        var regressions = recordBuild(0.1, 2.0);
+        assertEquals(1, regressions.size());
+        assertEquals("LaunchInterceptorTest#testSlow", regressions.get(0).id());
+        assertEquals(1.0, regressions.get(0).baseline(), 1e-6);
+        assertEquals(2.0, regressions.get(0).ratio(), 1e-6);
+    }
+
+    @Test
+    public void testSmallAbsoluteIncreaseIgnored() {
+        for (int i = 0; i < 3; i++)
+            recordBuild(0.001, 1.0);
+        assertTrue(recordBuild(0.01, 1.0).isEmpty());
+    }
+
+    @Test
+    public void testWindowDropsOldSamples() {
+        recordBuild(0.1, 100.0);
+        for (int i = 0; i < 5; i++)
+            recordBuild(0.1, 1.0);
+        var slowest = history.slowestTests(REPO, "main", 1);
+        assertEquals(1, slowest.size());
+        assertEquals(1.0, slowest.get(0).baseline(), 1e-6);
+        assertEquals(4, slowest.get(0).samples());
+    }
+
+    @Test
+    public void testSlowestAndMostRegressed() {
+        for (int i = 0; i < 3; i++)
+            recordBuild(0.1, 1.0);
+        recordBuild(0.4, 1.0);
+
+        assertEquals("LaunchInterceptorTest#testSlow", history.slowestTests(REPO, "main", 2).get(0).id());
+        assertEquals("LaunchInterceptorTest#testFast", history.mostRegressedTests(REPO, "main", 2).get(0).id());
+        assertEquals(1.4, history.slowestClasses(REPO, "main", 1).get(0).latest(), 1e-6);
+        assertTrue(history.slowestTests(REPO, "other-branch", 5).isEmpty());
+    }
+
+    @Test
+    public void testMostRegressedSkipsTestsWithFewSamples() {
+        for (int i = 0; i < 3; i++)
+            recordBuild(0.1, 1.0);
+        recordBuild(0.1, 1.5);
+        // A new test with the highest ratio, but too few samples for its baseline to be trusted
+        history.record(REPO, "main", List.of(new TestCaseResult("NewTest", "testNew", 0.1, false)));
+        history.record(REPO, "main", List.of(new TestCaseResult("NewTest", "testNew", 1.0, false)));
+
+        var regressed = history.mostRegressedTests(REPO, "main", 1);
+        assertEquals(1, regressed.size());
+        assertEquals("LaunchInterceptorTest#testSlow", regressed.get(0).id());
+    }
+
+    @Test
+    public void testInvalidWindow() {
+        assertThrows(IllegalArgumentException.class, () -> new TestDurationHistory(3, 3, 0.5, 0));
+    }
+}
@@ -0,0 +1,75 @@
+package server_communication;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BisectWorkspaceTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testListCommitsAndCheckout() throws Exception {
+        File repoDir = temporaryFolder.newFolder("build-head");
+        List<String> hashes = new ArrayList<>();
+        try (Git git = Git.init().setDirectory(repoDir).call()) {
+            for (int i = 0; i < 4; i++) {
+                Files.writeString(repoDir.toPath().resolve("version.txt"), "v" + i);
+                git.add().addFilepattern("version.txt").call();
+                hashes.add(git.commit().setMessage("Version " + i + "\n\nDetails")
+                        .setAuthor("Dev " + i, "dev" + i + "@example.com").call().getName());
+            }
+            // The build workspace is left on a detached head, like after cloneRepo()
+            git.checkout().setName(hashes.get(3)).call();
+        }
+
+        var workspace = new BisectWorkspace(repoDir.getAbsolutePath());
+        var commits = workspace.listCommits(hashes.get(0), hashes.get(3));
+        assertEquals(hashes.subList(1, 4), commits.stream().map(BisectWorkspace.Commit::id).toList());
+        assertEquals(new BisectWorkspace.Commit(hashes.get(2), "Dev 2", "dev2@example.com", "Version 2"),
+                commits.get(1));
+        // The good commit must be an ancestor of the bad one
+        assertTrue(workspace.listCommits(hashes.get(3), hashes.get(0)).isEmpty());
+
+        String probe = workspace.checkout(0, hashes.get(1));
+        assertEquals("v1", Files.readString(Path.of(probe, "version.txt")));
+        assertEquals(probe, workspace.checkout(0, hashes.get(2)));
+        assertEquals("v2", Files.readString(Path.of(probe, "version.txt")));
+
+        workspace.deleteProbes();
+        assertFalse(new File(probe).exists());
+        assertTrue(repoDir.exists());
+    }
+
+    @Test
+    public void testProbesCreatedInGivenFolder() throws Exception {
+        File repoDir = temporaryFolder.newFolder("memory", "build-head");
+        String hash;
+        try (Git git = Git.init().setDirectory(repoDir).call()) {
+            Files.writeString(repoDir.toPath().resolve("version.txt"), "v0");
+            git.add().addFilepattern("version.txt").call();
+            hash = git.commit().setMessage("Version 0").call().getName();
+        }
+
+        Path disk = temporaryFolder.getRoot().toPath().resolve("disk");
+        var workspace = new BisectWorkspace(repoDir.getAbsolutePath(), disk);
+        String probe = workspace.checkout(1, hash);
+        assertEquals(disk.resolve("build-head-probe-1").toString(), probe);
+        assertEquals("v0", Files.readString(Path.of(probe, "version.txt")));
+        assertEquals(List.of("build-head"), List.of(repoDir.getParentFile().list()));
+
+        workspace.deleteProbes();
+        assertFalse(new File(probe).exists());
+        assertTrue(repoDir.exists());
+    }
+}
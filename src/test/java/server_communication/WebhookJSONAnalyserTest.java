@@ -1,18 +1,33 @@
 package server_communication;
 
+import org.eclipse.jgit.api.Git;
 import org.json.JSONArray;
 import org.json.JSONObject;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class WebhookJSONAnalyserTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void testCloneRepositorySample1() throws Exception {
         // Read the JSON payload from the file
@@ -47,8 +62,9 @@ public class WebhookJSONAnalyserTest {
         // Assert that the base directory exists
         assertTrue("dd2480-builds directory does not exist!", baseDir.exists());
 
-        // Create a unique directory for this build using the commit hash
-        String buildDir = "build-426455fc8993003f1153c034496c7bb27b8ae553";
+        // Create a unique directory for this build using the repository and the commit hash
+        String buildDir = WebhookJSONAnalyser.getWorkspaceName(webhookHandler.getRepoURL(),
+                "426455fc8993003f1153c034496c7bb27b8ae553");
         File repoDir = new File(baseDir, buildDir);
 
         // Assert that the repo directory exists
@@ -91,8 +107,9 @@ public class WebhookJSONAnalyserTest {
         // Assert that the base directory exists
         assertTrue("dd2480-builds directory does not exist!", baseDir.exists());
 
-        // Create a unique directory for this build using the commit hash
-        String buildDir = "build-8ffc04a68d7449d57a28b41876f93e41600f0240";
+        // Create a unique directory for this build using the repository and the commit hash
+        String buildDir = WebhookJSONAnalyser.getWorkspaceName(webhookHandler.getRepoURL(),
+                "8ffc04a68d7449d57a28b41876f93e41600f0240");
         File repoDir = new File(baseDir, buildDir);
 
         // Assert that the repo directory exists
@@ -101,4 +118,139 @@ public class WebhookJSONAnalyserTest {
         // Clean up
         webhookHandler.deleteRepo("8ffc04a68d7449d57a28b41876f93e41600f0240");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testToJSONRoundTripWithoutCloning() {
+        String jsonPayload;
+        try {
+            jsonPayload = new String(Files.readAllBytes(Paths.get("resources/WebhookJSONAnalyserTestSample.json")));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read JSON test sample", e);
+        }
+
+        JSONObject jsonObject = new JSONArray(jsonPayload).getJSONObject(1);
+        var webhookHandler = new WebhookJSONAnalyser(jsonObject.toString(), false);
+        assertNull(webhookHandler.getRepoPath());
+
+        // The compact payload must give back the same fields
+        var replayed = new WebhookJSONAnalyser(webhookHandler.toJSON().toString(), false);
+        assertEquals(webhookHandler.getCommitRef(), replayed.getCommitRef());
+        assertEquals(webhookHandler.getCommitBranch(), replayed.getCommitBranch());
+        assertEquals(webhookHandler.getRepoURL(), replayed.getRepoURL());
+        assertEquals(webhookHandler.getCommitHash(), replayed.getCommitHash());
+        assertEquals(webhookHandler.getCommitMail(), replayed.getCommitMail());
+        assertEquals(webhookHandler.getCommitAuthor(), replayed.getCommitAuthor());
+        assertEquals(webhookHandler.getCommitMessage(), replayed.getCommitMessage());
+        assertEquals(webhookHandler.getBeforeHash(), replayed.getBeforeHash());
+        assertEquals(webhookHandler.getCommits(), replayed.getCommits());
+    }
+
+    @Test
+    public void testPushedCommits() throws IOException {
+        String jsonPayload = new String(Files.readAllBytes(Paths.get("resources/WebhookJSONAnalyserTestSample.json")));
+        JSONObject jsonObject = new JSONArray(jsonPayload).getJSONObject(0);
+        var webhookHandler = new WebhookJSONAnalyser(jsonObject.toString(), false);
+
+        assertEquals(jsonObject.getString("before"), webhookHandler.getBeforeHash());
+        var commits = webhookHandler.getCommits();
+        assertEquals(jsonObject.getJSONArray("commits").length(), commits.size());
+        var last = commits.get(commits.size() - 1);
+        assertEquals(webhookHandler.getCommitHash(), last.id());
+        assertEquals(jsonObject.getJSONArray("commits").getJSONObject(commits.size() - 1)
+                .getJSONArray("modified").length(), last.modified().size());
+    }
+
+    @Test
+    public void testPushedFiles() {
+        JSONObject payload = new JSONObject()
+                .put("ref", "refs/heads/main")
+                .put("before", "b0")
+                .put("repository", new JSONObject().put("html_url", "https://example.com/repo"))
+                .put("head_commit", new JSONObject().put("id", "c2").put("message", "Docs")
+                        .put("committer", new JSONObject().put("email", "dev@example.com").put("name", "Dev")))
+                .put("commits", new JSONArray()
+                        .put(new JSONObject().put("id", "c1").put("added", new JSONArray().put("docs/a.md")))
+                        .put(new JSONObject().put("id", "c2").put("modified", new JSONArray().put("README.md"))
+                                .put("removed", new JSONArray().put("docs/a.md"))));
+        var webhookHandler = new WebhookJSONAnalyser(payload.toString(), false);
+        assertEquals(Set.of("docs/a.md", "README.md"), webhookHandler.getPushedFiles());
+        assertEquals(Set.of("docs/a.md", "README.md"),
+                new WebhookJSONAnalyser(webhookHandler.toJSON().toString(), false).getPushedFiles());
+
+        // The commits of a forced push do not describe the change since the previous head
+        payload.put("forced", true);
+        assertNull(new WebhookJSONAnalyser(payload.toString(), false).getPushedFiles());
+    }
+
+    @Test
+    public void testListChangedFiles() throws Exception {
+        Path origin = temporaryFolder.newFolder("origin").toPath();
+        Path workspaceRoot = temporaryFolder.newFolder("builds").toPath();
+        String first;
+        String second;
+        try (Git git = Git.init().setDirectory(origin.toFile()).setInitialBranch("main").call()) {
+            Files.writeString(origin.resolve("pom.xml"), "<project/>");
+            Files.writeString(origin.resolve("README.md"), "v1");
+            git.add().addFilepattern(".").call();
+            first = git.commit().setMessage("First").setAuthor("Dev", "dev@example.com").call().getName();
+            Files.writeString(origin.resolve("README.md"), "v2");
+            Files.createDirectories(origin.resolve("docs"));
+            Files.writeString(origin.resolve("docs/guide.md"), "guide");
+            git.add().addFilepattern(".").call();
+            second = git.commit().setMessage("Docs").setAuthor("Dev", "dev@example.com").call().getName();
+        }
+
+        JSONObject payload = new JSONObject()
+                .put("ref", "refs/heads/main")
+                .put("before", first)
+                .put("repository", new JSONObject().put("html_url", origin.toUri().toString()))
+                .put("head_commit", new JSONObject().put("id", second).put("message", "Docs")
+                        .put("committer", new JSONObject().put("email", "dev@example.com").put("name", "Dev")));
+        var webhookHandler = new WebhookJSONAnalyser(payload.toString(), false);
+        assertNull(webhookHandler.getPushedFiles());
+        assertNull(webhookHandler.listChangedFiles(first));
+        try {
+            assertNotNull(webhookHandler.cloneRepo(workspaceRoot));
+            assertEquals(Set.of("README.md", "docs/guide.md"), webhookHandler.listChangedFiles(first));
+            assertNull(webhookHandler.listChangedFiles("0000000000000000000000000000000000000000"));
+        } finally {
+            webhookHandler.deleteRepo();
+        }
+    }
+
+    @Test
+    public void testSameCommitOfTwoRepositoriesClonedApart() throws Exception {
+        Path upstream = temporaryFolder.newFolder("upstream").toPath();
+        Path workspaceRoot = temporaryFolder.newFolder("workspaces").toPath();
+        String commit;
+        try (Git git = Git.init().setDirectory(upstream.toFile()).setInitialBranch("main").call()) {
+            Files.writeString(upstream.resolve("pom.xml"), "<project/>");
+            git.add().addFilepattern(".").call();
+            commit = git.commit().setMessage("First").setAuthor("Dev", "dev@example.com").call().getName();
+        }
+        // A fork holds the same commit under another URL
+        Path fork = temporaryFolder.getRoot().toPath().resolve("fork");
+        Git.cloneRepository().setURI(upstream.toUri().toString()).setDirectory(fork.toFile()).call().close();
+
+        List<WebhookJSONAnalyser> analysers = new ArrayList<>();
+        for (Path repo : List.of(upstream, fork)) {
+            analysers.add(new WebhookJSONAnalyser(new JSONObject()
+                    .put("ref", "refs/heads/main")
+                    .put("repository", new JSONObject().put("html_url", repo.toUri().toString()))
+                    .put("head_commit", new JSONObject().put("id", commit).put("message", "First")
+                            .put("committer", new JSONObject().put("email", "dev@example.com").put("name", "Dev")))
+                    .toString(), false));
+        }
+        String upstreamPath = analysers.get(0).cloneRepo(workspaceRoot);
+        String forkPath = analysers.get(1).cloneRepo(workspaceRoot);
+        assertNotNull(upstreamPath);
+        assertNotNull(forkPath);
+        assertNotEquals(upstreamPath, forkPath);
+
+        // Releasing the workspace of one repository leaves the other one untouched
+        analysers.get(1).deleteRepo();
+        assertFalse(new File(forkPath).exists());
+        assertTrue(new File(upstreamPath, "pom.xml").exists());
+        analysers.get(0).deleteRepo();
+    }
+}